@@ -0,0 +1,187 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.graph.node.builtin.base.BinaryOperationNode;
+import io.github.mattidragon.nodeflow.graph.node.builtin.base.UnaryOperationNode;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the vector column kernels with the loops that the built-in nodes fall back to without them. Run with {@code ./gradlew runColumnKernelBenchmark}.
+ * Also checks that both give the same results, as the vector kernels are only allowed to replace the fallback if they do.
+ * <p>
+ * {@link #vectorShared} runs the same kernels through one method per shape instead of one per op, which is what {@link VectorKernels} would look like without its duplication.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ColumnKernelBenchmark {
+    private static final int COLUMN_LENGTH = 1027; // Not a multiple of any vector length, so tails are included
+    private static final int POLLUTION_ROUNDS = 10_000;
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final Map<PrimitiveOp, VectorOperators.Operator> OPERATORS = Map.ofEntries(
+            Map.entry(PrimitiveOp.ADD, VectorOperators.ADD),
+            Map.entry(PrimitiveOp.SUBTRACT, VectorOperators.SUB),
+            Map.entry(PrimitiveOp.MULTIPLY, VectorOperators.MUL),
+            Map.entry(PrimitiveOp.DIVIDE, VectorOperators.DIV),
+            Map.entry(PrimitiveOp.MIN, VectorOperators.MIN),
+            Map.entry(PrimitiveOp.MAX, VectorOperators.MAX),
+            Map.entry(PrimitiveOp.NEGATE, VectorOperators.NEG),
+            Map.entry(PrimitiveOp.ABS, VectorOperators.ABS),
+            Map.entry(PrimitiveOp.SQRT, VectorOperators.SQRT),
+            Map.entry(PrimitiveOp.NUM_EQL, VectorOperators.EQ),
+            Map.entry(PrimitiveOp.NUM_NEQL, VectorOperators.NE),
+            Map.entry(PrimitiveOp.LESS, VectorOperators.LT),
+            Map.entry(PrimitiveOp.GREATER, VectorOperators.GT));
+
+    @Param({ "ADD", "SUBTRACT", "MULTIPLY", "DIVIDE", "MIN", "MAX", "NEGATE", "ABS", "SQRT", "NUM_EQL", "NUM_NEQL", "LESS", "GREATER" })
+    public PrimitiveOp op;
+
+    private ColumnFrame frame;
+    private ColumnKernel fallback;
+    private ColumnKernel vector;
+    private ColumnKernel vectorShared;
+
+    @Setup
+    public void setup() {
+        if (!ColumnKernels.isVectorized())
+            throw new IllegalStateException("Vector kernels aren't available");
+
+        var random = new Random(0);
+        frame = new ColumnFrame(new byte[] { ExecutionPlan.LANE_NUMBER, ExecutionPlan.LANE_NUMBER, ExecutionPlan.LANE_NUMBER, ExecutionPlan.LANE_BOOLEAN }, COLUMN_LENGTH);
+        for (int i = 0; i < COLUMN_LENGTH; i++) {
+            frame.numbers[0][i] = random.nextDouble() * 100 - 50;
+            frame.numbers[1][i] = i % 97 == 0 ? Double.NaN : random.nextDouble() * 100 - 50;
+        }
+        frame.length = COLUMN_LENGTH;
+
+        // Each fallback loop is shared by all node types of its shape, so in real graphs it sees several operators. Run all of them first so that this one isn't measured with an unrealistically clean profile.
+        for (var other : OPERATORS.keySet()) {
+            prepare(other);
+            var otherFallback = fallback(other);
+            var otherShared = vectorShared(other);
+            for (int i = 0; i < POLLUTION_ROUNDS; i++) {
+                otherFallback.apply(frame);
+                otherShared.apply(frame);
+            }
+        }
+
+        prepare(op);
+        fallback = fallback(op);
+        vector = ColumnKernels.getKernel(op);
+        vectorShared = vectorShared(op);
+        if (vector == null)
+            throw new IllegalStateException("No vector kernel for " + op);
+
+        var expected = runAndCopy(fallback);
+        if (!expected.equals(runAndCopy(vector)))
+            throw new AssertionError("Vector kernel for " + op + " gives different results than the fallback");
+        if (!expected.equals(runAndCopy(vectorShared)))
+            throw new AssertionError("Shared vector kernel for " + op + " gives different results than the fallback");
+    }
+
+    @Benchmark
+    public void fallback() {
+        fallback.apply(frame);
+    }
+
+    @Benchmark
+    public void vector() {
+        vector.apply(frame);
+    }
+
+    @Benchmark
+    public void vectorShared() {
+        vectorShared.apply(frame);
+    }
+
+    private void prepare(PrimitiveOp op) {
+        frame.inputSlots = op.getShape().getArity() == 1 ? new int[] { 0 } : new int[] { 0, 1 };
+        frame.outputSlot = op.getShape().hasBooleanOutput() ? 3 : 2;
+        frame.outputCount = 1;
+    }
+
+    private String runAndCopy(ColumnKernel kernel) {
+        kernel.apply(frame);
+        return frame.numbers[frame.outputSlot] != null ? Arrays.toString(frame.numbers[frame.outputSlot]) : Arrays.toString(frame.booleans[frame.outputSlot]);
+    }
+
+    // The same loops as the node types of the op use, see NodeType
+    private static ColumnKernel fallback(PrimitiveOp op) {
+        return switch (op.getShape()) {
+            case NUMBER_UNARY -> UnaryOperationNode.numberColumns(op::applyNumber);
+            case NUMBER_BINARY -> BinaryOperationNode.numberColumns(op::applyNumber);
+            case COMPARISON -> BinaryOperationNode.comparisonColumns(op::compare);
+            default -> throw new IllegalArgumentException(op + " has no vector kernel");
+        };
+    }
+
+    private static ColumnKernel vectorShared(PrimitiveOp op) {
+        var operator = OPERATORS.get(op);
+        return switch (op.getShape()) {
+            case NUMBER_UNARY -> frame -> unary(frame, (VectorOperators.Unary) operator);
+            case NUMBER_BINARY -> frame -> binary(frame, (VectorOperators.Binary) operator);
+            case COMPARISON -> frame -> compare(frame, (VectorOperators.Comparison) operator);
+            default -> throw new IllegalArgumentException(op + " has no vector kernel");
+        };
+    }
+
+    private static void unary(ColumnFrame frame, VectorOperators.Unary operator) {
+        var input = frame.getNumbers(0);
+        var result = frame.getNumberOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, input, i).lanewise(operator).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            DoubleVector.fromArray(SPECIES, input, i, mask).lanewise(operator).intoArray(result, i, mask);
+        }
+    }
+
+    private static void binary(ColumnFrame frame, VectorOperators.Binary operator) {
+        var first = frame.getNumbers(0);
+        var second = frame.getNumbers(1);
+        var result = frame.getNumberOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, first, i).lanewise(operator, DoubleVector.fromArray(SPECIES, second, i)).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            DoubleVector.fromArray(SPECIES, first, i, mask).lanewise(operator, DoubleVector.fromArray(SPECIES, second, i, mask)).intoArray(result, i, mask);
+        }
+    }
+
+    private static void compare(ColumnFrame frame, VectorOperators.Comparison operator) {
+        var first = frame.getNumbers(0);
+        var second = frame.getNumbers(1);
+        var result = frame.getBooleanOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, first, i).compare(operator, DoubleVector.fromArray(SPECIES, second, i)).intoArray(result, i);
+        }
+        if (i < length) {
+            var inRange = SPECIES.indexInRange(i, length);
+            var mask = DoubleVector.fromArray(SPECIES, first, i, inRange).compare(operator, DoubleVector.fromArray(SPECIES, second, i, inRange));
+            for (int lane = 0; i + lane < length; lane++) {
+                result[i + lane] = mask.laneIsSet(lane);
+            }
+        }
+    }
+}
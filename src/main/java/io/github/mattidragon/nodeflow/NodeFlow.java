@@ -2,13 +2,18 @@ package io.github.mattidragon.nodeflow;
 
 import io.github.mattidragon.nodeflow.graph.context.ContextType;
 import io.github.mattidragon.nodeflow.graph.data.DataType;
+import io.github.mattidragon.nodeflow.graph.effect.MessageBatcher;
+import io.github.mattidragon.nodeflow.graph.evaluation.TieredExecution;
 import io.github.mattidragon.nodeflow.graph.node.NodeType;
 import io.github.mattidragon.nodeflow.graph.node.group.DirectNodeGroup;
 import io.github.mattidragon.nodeflow.graph.node.group.NodeGroup;
 import io.github.mattidragon.nodeflow.graph.node.group.TagNodeGroup;
 import io.github.mattidragon.nodeflow.misc.GraphSyncPacket;
+import io.github.mattidragon.nodeflow.scheduler.GraphScheduler;
 import io.github.mattidragon.nodeflow.screen.EditorScreenHandler;
 import net.fabricmc.api.ModInitializer;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.screenhandler.v1.ExtendedScreenHandlerType;
 import net.minecraft.registry.Registries;
 import net.minecraft.registry.Registry;
@@ -36,5 +41,16 @@ public class NodeFlow implements ModInitializer {
 
         NodeGroup.registerDecoder(TagNodeGroup.DECODER_ID, TagNodeGroup::new);
         NodeGroup.registerDecoder(DirectNodeGroup.DECODER_ID, DirectNodeGroup::new);
+
+        ServerTickEvents.END_SERVER_TICK.register(server -> {
+            GraphScheduler.getInstance().tick();
+            MessageBatcher.getInstance().flush();
+            TieredExecution.getInstance().tick();
+        });
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            GraphScheduler.getInstance().clear();
+            MessageBatcher.getInstance().clear();
+            TieredExecution.getInstance().clear();
+        });
     }
 }
@@ -3,26 +3,36 @@ package io.github.mattidragon.nodeflow.graph;
 import com.mojang.datafixers.util.Either;
 import io.github.mattidragon.nodeflow.NodeFlow;
 import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.context.ContextType;
 import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.effect.EffectQueue;
+import io.github.mattidragon.nodeflow.graph.evaluation.EvaluationMode;
+import io.github.mattidragon.nodeflow.graph.evaluation.ExecutionPlan;
 import io.github.mattidragon.nodeflow.graph.node.Node;
 import io.github.mattidragon.nodeflow.graph.node.NodeType;
 import io.github.mattidragon.nodeflow.misc.EvaluationError;
-import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtElement;
 import net.minecraft.nbt.NbtList;
-import net.minecraft.text.Text;
-import net.minecraft.util.Formatting;
 import net.minecraft.util.Identifier;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
-import java.util.function.Predicate;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 public class Graph {
     private final Map<UUID, Node> nodes = new LinkedHashMap<>();
     private final Set<Connection> connections = new LinkedHashSet<>();
+    // Indexes over connections, kept in sync by addConnectionInternal and removeConnectionInternal
+    private final Map<UUID, Set<Connection>> connectionsByNode = new HashMap<>();
+    private final Map<Endpoint, Set<Connection>> connectionsBySource = new HashMap<>();
+    private final Map<Endpoint, Set<Connection>> connectionsByTarget = new HashMap<>();
     public final GraphEnvironment env;
+    @Nullable
+    private ExecutionPlan plan = null;
 
     public Graph(GraphEnvironment env) {
         this.env = env;
@@ -44,6 +54,7 @@ public class Graph {
             return;
         }
         nodes.put(node.id, node);
+        invalidatePlan();
     }
 
     public Node getNode(UUID id) {
@@ -56,14 +67,16 @@ public class Graph {
 
     public void removeNode(UUID id) {
         nodes.remove(id);
-        connections.removeAll(getConnections(id));
+        List.copyOf(getConnections(id)).forEach(this::removeConnectionInternal);
+        invalidatePlan();
     }
 
     /**
      * Removes all connections to the specified connector
      */
     public void removeConnections(Connector<?> connector) {
-        connections.removeAll(getConnections(connector));
+        List.copyOf(getConnections(connector)).forEach(this::removeConnectionInternal);
+        invalidatePlan();
     }
 
     public void addConnection(Connector<?> target, Connector<?> source) {
@@ -77,16 +90,42 @@ public class Graph {
             source = tmp;
         }
 
-        connections.add(new Connection(target.parent().id, target.id(), source.parent().id, source.id()));
+        addConnectionInternal(new Connection(target.parent().id, target.id(), source.parent().id, source.id()));
+        invalidatePlan();
+    }
+
+    private void addConnectionInternal(Connection connection) {
+        if (!connections.add(connection)) return;
+        connectionsByNode.computeIfAbsent(connection.targetUuid(), __ -> new LinkedHashSet<>()).add(connection);
+        connectionsByNode.computeIfAbsent(connection.sourceUuid(), __ -> new LinkedHashSet<>()).add(connection);
+        connectionsBySource.computeIfAbsent(new Endpoint(connection.sourceUuid(), connection.sourceName()), __ -> new LinkedHashSet<>()).add(connection);
+        connectionsByTarget.computeIfAbsent(new Endpoint(connection.targetUuid(), connection.targetName()), __ -> new LinkedHashSet<>()).add(connection);
+    }
+
+    private void removeConnectionInternal(Connection connection) {
+        if (!connections.remove(connection)) return;
+        removeFromIndex(connectionsByNode, connection.targetUuid(), connection);
+        removeFromIndex(connectionsByNode, connection.sourceUuid(), connection);
+        removeFromIndex(connectionsBySource, new Endpoint(connection.sourceUuid(), connection.sourceName()), connection);
+        removeFromIndex(connectionsByTarget, new Endpoint(connection.targetUuid(), connection.targetName()), connection);
+    }
+
+    private static <K> void removeFromIndex(Map<K, Set<Connection>> index, K key, Connection connection) {
+        var set = index.get(key);
+        if (set == null) return;
+        set.remove(connection);
+        if (set.isEmpty())
+            index.remove(key);
     }
 
     public void cleanConnections(Node node) {
-        getConnections(node.id).stream().filter(connection -> {
+        List.copyOf(getConnections(node.id)).stream().filter(connection -> {
             var input = connection.getTargetConnector(this);
             var output = connection.getSourceConnector(this);
 
             return input == null || output == null || input.type() != output.type();
-        }).forEach(connections::remove);
+        }).forEach(this::removeConnectionInternal);
+        invalidatePlan();
     }
 
     /**
@@ -98,22 +137,21 @@ public class Graph {
 
     /**
      * Returns all connections to and from the node with the specified UUID.
+     * The returned set is an unmodifiable view that changes along with the graph; copy it if you need to modify the graph while iterating.
      */
     public Set<Connection> getConnections(UUID node) {
-        return connections.stream().filter(connection -> connection.targetUuid().equals(node) || connection.sourceUuid().equals(node)).collect(Collectors.toCollection(HashSet::new));
+        var found = connectionsByNode.get(node);
+        return found == null ? Set.of() : Collections.unmodifiableSet(found);
     }
 
     /**
      * Returns all the nodes connected to the specified connector. Normally 0 or 1, but for outputs of splittable types there can be more.
+     * The returned set is an unmodifiable view that changes along with the graph; copy it if you need to modify the graph while iterating.
      */
     public Set<Connection> getConnections(Connector<?> connector) {
-        if (connector.isOutput()) {
-            return connections.stream().filter(connection -> connector.equals(connection.getSourceConnector(this))).collect(Collectors.toCollection(HashSet::new));
-        }
-        for (var connection : connections) {
-            if (connector.equals(connection.getTargetConnector(this))) return Set.of(connection);
-        }
-        return Set.of();
+        var index = connector.isOutput() ? connectionsBySource : connectionsByTarget;
+        var found = index.get(new Endpoint(connector.parent().id, connector.id()));
+        return found == null ? Set.of() : Collections.unmodifiableSet(found);
     }
 
     public void writeNbt(NbtCompound data) {
@@ -155,14 +193,18 @@ public class Graph {
         }
 
         connections.clear();
+        connectionsByNode.clear();
+        connectionsBySource.clear();
+        connectionsByTarget.clear();
         for (var element : data.getList("connections", NbtElement.COMPOUND_TYPE)) {
             var connection = Connection.fromNbt((NbtCompound) element);
             if (connection == null) {
                 NodeFlow.LOGGER.warn("Found malformed connection data. Removing");
             } else if (validateConnection(connection, ignoredIds)) {
-                connections.add(connection);
+                addConnectionInternal(connection);
             }
         }
+        invalidatePlan();
     }
 
     private boolean validateConnection(Connection connection, ArrayList<UUID> ignoredIds) {
@@ -194,6 +236,43 @@ public class Graph {
         return true;
     }
 
+    /**
+     * Returns the execution plan for the current structure of this graph, creating it if necessary.
+     */
+    public ExecutionPlan getExecutionPlan() {
+        if (plan == null)
+            plan = ExecutionPlan.create(this);
+        return plan;
+    }
+
+    /**
+     * Discards the cached execution plan without marking the graph as modified, releasing its program and compiled graph.
+     * Call this when a graph won't be evaluated for a while, for example when it's unloaded. The plan is recreated when it's needed again.
+     */
+    public void releaseExecutionPlan() {
+        if (plan != null)
+            plan.discard();
+        plan = null;
+    }
+
+    /**
+     * Marks the graph as modified, discarding the cached execution plan along with the validation results it holds. Called automatically by all mutating methods of the graph,
+     * but nodes that change their own connectors have to call this themselves. Configuration changes go through {@link Node#onConfigChanged()}.
+     */
+    public void invalidatePlan() {
+        if (plan != null)
+            plan.discard();
+        plan = null;
+    }
+
+    /**
+     * Returns all contexts used by nodes in this graph, so that callers can skip computing contexts the graph doesn't need.
+     * Computed once for each structure of the graph.
+     */
+    public Set<ContextType<?>> getRequiredContexts() {
+        return getExecutionPlan().getRequiredContexts();
+    }
+
     /**
      * Evaluates the graph with the given context. Even if an error is detected when running one node another node that has side effects might have run. Ensure that no issues can be caused by this in your environment, by for example delaying application of nodes until after evaluation.
      * @param context Additional context for nodes to use.
@@ -201,102 +280,100 @@ public class Graph {
      * @implNote Currently only returns one error at a time, but in the future some situation might allow multiple errors.
      */
     public List<EvaluationError> evaluate(Context context) {
-        if (nodes.values().stream().anyMatch(Predicate.not(Node::isFullyConnected)))
-            return List.of(EvaluationError.Type.NOT_CONNECTED.error());
+        return getExecutionPlan().evaluate(context);
+    }
 
-        for (Node node : nodes.values()) {
-            var errors = node.validate();
-            if (!errors.isEmpty()) {
-                return List.of(EvaluationError.Type.INVALID_CONFIG.error(errors.get(0).copy().formatted(Formatting.YELLOW)));
-            }
-        }
+    /**
+     * Evaluates the graph like {@link #evaluate(Context)}, but only the nodes selected by the mode.
+     * @see EvaluationMode
+     */
+    public List<EvaluationError> evaluate(Context context, EvaluationMode mode) {
+        return getExecutionPlan().evaluate(context, mode);
+    }
+
+    /**
+     * Evaluates the graph once for each of the given contexts. Each context gets the same errors as it would from {@link #evaluate(Context)}, but each node runs for all contexts before the next one, so the side effects of different contexts are interleaved.
+     * This is faster than separate evaluations when the same graph is used with many contexts, as the graph is only validated and walked once.
+     * @return The errors of each evaluation, in the same order as the contexts.
+     */
+    public List<List<EvaluationError>> evaluateBatch(List<Context> contexts) {
+        return getExecutionPlan().evaluateBatch(contexts);
+    }
 
-        // Make sure all nodes are processed
-        var nodesProcessed = 0;
-        var inputCounts = new Object2IntOpenHashMap<Node>(nodes.size());
-        inputCounts.defaultReturnValue(0);
-        var availableInputs = new HashMap<Node, Map<String, DataValue<?>>>();
+    /**
+     * Evaluates the graph like {@link #evaluate(Context)}, but runs independent nodes on the {@link ForkJoinPool#commonPool() common pool}.
+     * Nodes with side effects and simple built-in nodes still run on the calling thread, and small graphs are evaluated entirely on the calling thread, as splitting them up would cost more than it saves.
+     * Only worth it for wide graphs with expensive nodes. Custom nodes without side effects have to be safe to evaluate from other threads.
+     */
+    public List<EvaluationError> evaluateParallel(Context context) {
+        return getExecutionPlan().evaluateParallel(context, ForkJoinPool.commonPool());
+    }
 
-        // Count connected inputs of all nodes
-        for (var connection : connections) {
-            inputCounts.addTo(nodes.get(connection.targetUuid()), 1);
-        }
+    /**
+     * Evaluates the graph on the given executor and applies the effects emitted by nodes afterwards on the server executor, usually the {@link net.minecraft.server.MinecraftServer MinecraftServer}.
+     * The effects are only applied if evaluation succeeded, so a failed evaluation never leaves the world partially changed.
+     * The graph must not be modified until the returned future completes, and custom nodes have to be safe to evaluate from other threads.
+     * @see io.github.mattidragon.nodeflow.graph.effect.Effect Effect
+     */
+    public CompletableFuture<List<EvaluationError>> evaluateAsync(Context context, Executor executor, Executor serverExecutor) {
+        var plan = getExecutionPlan();
+        var effects = new EffectQueue();
+        var effectContext = Context.builder().putAll(context).put(ContextType.EFFECT_QUEUE, effects).build();
+        return CompletableFuture.supplyAsync(() -> plan.evaluate(effectContext), executor)
+                .thenApplyAsync(errors -> {
+                    if (errors.isEmpty())
+                        effects.applyAll();
+                    return errors;
+                }, serverExecutor);
+    }
 
-        var readyNodes = nodes.values().stream().filter(node -> inputCounts.getInt(node) == 0).toList();
-
-        while (!readyNodes.isEmpty()) {
-            var nextNodes = new ArrayList<Node>();
-
-            for (var node : readyNodes) {
-                var inputValues = availableInputs.computeIfAbsent(node, __ -> new HashMap<>());
-                var inputConnectors = node.getInputs();
-
-                // TODO: move to other node checks (why is it here?)
-                var missingContexts = node.contexts.stream().filter(Predicate.not(context::contains)).toList();
-                if (!missingContexts.isEmpty()) {
-                    return List.of(EvaluationError.Type.MISSING_CONTEXTS.error(missingContexts));
-                }
-
-                // get values for inputs in order
-                var values = Arrays.stream(inputConnectors)
-                        .map(connector -> inputValues.get(connector.id()))
-                        .toArray(DataValue[]::new);
-
-                // validate types of inputs to avoid ugly errors
-                for (int i = 0; i < values.length; i++) {
-                    if (inputConnectors[i].type() != values[i].type()) {
-                        return List.of(EvaluationError.Type.MISMATCHED_CONNECTION_TYPES.error());
-                    }
-                }
-
-                Either<DataValue<?>[], Text> either;
-                try {
-                    either = node.process(values, context);
-                } catch (RuntimeException e) {
-                    NodeFlow.LOGGER.warn("Unexpected error while evaluating node", e);
-                    return List.of(EvaluationError.Type.EVALUATION_ERROR.error(e.getMessage()));
-                }
-
-                // Propagate node errors
-                if (either.left().isEmpty()) {
-                    // Intellij doesn't understand either
-                    //noinspection OptionalGetWithoutIsPresent
-                    return List.of(EvaluationError.Type.EVALUATION_ERROR.error(either.right().get()));
-                }
-
-                var results = either.left().get();
-                var expectedOutputs = node.getOutputs();
-
-                if (expectedOutputs.length != results.length) {
-                    return List.of(EvaluationError.Type.UNEXPECTED_OUTPUT_COUNT.error(expectedOutputs.length, results.length));
-                }
-
-                for (int i = 0; i < expectedOutputs.length; i++) {
-                    var connector = expectedOutputs[i];
-                    var value = results[i];
-
-                    if (value.type() != connector.type()) {
-                        return List.of(EvaluationError.Type.UNEXPECTED_OUTPUT_TYPE.error(i, value.type(), connector.type()));
-                    }
-
-                    var connections = getConnections(connector);
-                    for (var connection : connections) {
-                        var target = getNode(connection.targetUuid());
-                        var map = availableInputs.computeIfAbsent(target, __ -> new HashMap<>());
-                        map.put(connection.targetName(), value);
-
-                        // If the node has gotten all of its inputs, schedule it for the next round
-                        if (map.size() == inputCounts.getInt(target))
-                            nextNodes.add(target);
-                    }
-                }
-                nodesProcessed++;
-            }
-            readyNodes = nextNodes;
-        }
-        if (nodesProcessed != nodes.size())
-            return List.of(EvaluationError.Type.UNRESOLVABLE_NODES.error(nodesProcessed, nodes.size()));
-        return List.of();
+    /**
+     * Computes the current value of one output, only evaluating the nodes it depends on. Nodes with side effects elsewhere in the graph don't run,
+     * and only the needed inputs of conditional nodes are evaluated. Each node runs at most once per call.
+     * @param output An output connector of a node in this graph.
+     * @return The value of the output, or the error that prevented computing it.
+     */
+    public Either<DataValue<?>, EvaluationError> evaluateOutput(Connector<?> output, Context context) {
+        return getExecutionPlan().evaluateOutput(output, context);
     }
 
+    /**
+     * Evaluates the graph like {@link #evaluate(Context)}, but remembers the outputs of all nodes between calls and only reevaluates nodes when they might produce different outputs.
+     * Nodes that aren't {@link NodeType#pure() pure} always run, because they might depend on the context or other outside state. Other nodes only run when one of their inputs changed since the previous call.
+     * Nodes with side effects run every time, unless they are {@link NodeType#idempotent() idempotent}. The remembered outputs are discarded whenever the graph changes.
+     */
+    public List<EvaluationError> evaluateIncremental(Context context) {
+        return getExecutionPlan().evaluateIncremental(context);
+    }
+
+    /**
+     * Evaluates the graph like {@link #evaluate(Context)}, but using bytecode generated from the graph. Compilation happens on the first call after each change to the graph, so this is only worth it for graphs that are evaluated often.
+     * Falls back to normal evaluation if the graph can't be compiled.
+     * @see io.github.mattidragon.nodeflow.graph.evaluation.GraphCompiler GraphCompiler
+     */
+    public List<EvaluationError> evaluateCompiled(Context context) {
+        return getExecutionPlan().evaluateCompiled(context);
+    }
+
+    /**
+     * Evaluates the graph like {@link #evaluate(Context)}, but using an instruction stream where built-in math and logic nodes run without boxing their values.
+     * Cheaper to prepare than {@link #evaluateCompiled(Context)} and doesn't generate classes, but usually slower for graphs that run very often.
+     * @see io.github.mattidragon.nodeflow.graph.evaluation.RegisterProgram RegisterProgram
+     */
+    public List<EvaluationError> evaluateProgram(Context context) {
+        return getExecutionPlan().evaluateProgram(context);
+    }
+
+    /**
+     * Evaluates the graph like {@link #evaluate(Context)}, choosing how based on how often the graph has been evaluated. Graphs start out interpreted,
+     * switch to a {@link io.github.mattidragon.nodeflow.graph.evaluation.RegisterProgram RegisterProgram} and finally get compiled once they have been evaluated often enough.
+     * Meant for graphs that are evaluated repeatedly, where only the hot ones should pay for compilation.
+     * @see io.github.mattidragon.nodeflow.graph.evaluation.TieredExecution TieredExecution
+     */
+    public List<EvaluationError> evaluateTiered(Context context) {
+        return getExecutionPlan().evaluateTiered(context);
+    }
+
+    private record Endpoint(UUID node, String name) {
+    }
 }
@@ -1,16 +1,38 @@
 package io.github.mattidragon.nodeflow.graph.context;
 
-import org.apache.commons.lang3.ArrayUtils;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
+/**
+ * The values graphs can use during evaluation. Values are stored in arrays indexed by {@link ContextType#index() context type index}.
+ * A value is also available as all parents of its type, unless a value closer to that parent in the type hierarchy is present.
+ * Values can also be lazy, in which case they are only computed when a node uses them, and then remembered for as long as the context exists.
+ * @see MutableContext
+ */
 public class Context {
-    private final Map<ContextType<?>, Object> map;
+    // Values by the index of the type they were put as
+    Object[] exact;
+    // Values by the index of every type they can be used as
+    Object[] values;
+    // How far the type each value was put as is from the type it's used as, plus one so that zero means missing
+    int[] distances;
 
     protected Context(Map<ContextType<?>, Object> map) {
-        this.map = map;
+        this(ContextType.count());
+        map.forEach(this::set);
+    }
+
+    Context(int capacity) {
+        exact = new Object[capacity];
+        values = new Object[capacity];
+        distances = new int[capacity];
     }
 
     public static Context empty() {
@@ -22,27 +44,95 @@ public class Context {
     }
 
     public <T> T get(ContextType<T> type) {
-        if (map.containsKey(type))
+        var index = type.findIndex();
+        if (index != -1 && index < values.length && values[index] != null)
             // Only valid pairs can be inserted
             // noinspection unchecked
-            return (T) map.get(type);
-
-        for (var entry : map.entrySet()) {
-            if (ArrayUtils.contains(entry.getKey().parents(), type))
-                // Only valid pairs can be inserted
-                // noinspection unchecked
-                return (T) entry.getValue();
-        }
+            return (T) resolve(values[index]);
         throw new NoSuchElementException("Missing graph context: " + type);
     }
 
     public boolean contains(ContextType<?> type) {
-        if (map.containsKey(type)) return true;
-        for (var entry : map.entrySet()) {
-            if (ArrayUtils.contains(entry.getKey().parents(), type))
-                return true;
+        var index = type.findIndex();
+        return index != -1 && index < values.length && values[index] != null;
+    }
+
+    /**
+     * Calls the consumer with every value and the type it was put as. Computes all lazy values.
+     */
+    public void forEach(BiConsumer<ContextType<?>, Object> consumer) {
+        forEachRaw((type, value) -> consumer.accept(type, resolve(value)));
+    }
+
+    /**
+     * Like {@link #forEach}, but passes lazy values without computing them.
+     */
+    void forEachRaw(BiConsumer<ContextType<?>, Object> consumer) {
+        for (int i = 0; i < exact.length; i++) {
+            if (exact[i] != null)
+                consumer.accept(ContextType.byIndex(i), exact[i]);
         }
-        return false;
+    }
+
+    private static Object resolve(Object value) {
+        return value instanceof Lazy lazy ? lazy.get() : value;
+    }
+
+    void set(ContextType<?> type, Object value) {
+        Objects.requireNonNull(value, "Context values can't be null");
+        var index = type.index();
+        ensureCapacity(index + 1);
+        var replaced = exact[index] != null;
+        exact[index] = value;
+        if (replaced)
+            // The old value might still be used for some parents
+            rebuild();
+        else
+            provide(type, value);
+    }
+
+    void unset(ContextType<?> type) {
+        var index = type.findIndex();
+        if (index == -1 || index >= exact.length || exact[index] == null) return;
+        exact[index] = null;
+        rebuild();
+    }
+
+    void clear() {
+        Arrays.fill(exact, null);
+        Arrays.fill(values, null);
+        Arrays.fill(distances, 0);
+    }
+
+    private void provide(ContextType<?> type, Object value) {
+        var ancestors = type.ancestors();
+        var ancestorDistances = type.ancestorDistances();
+        for (int i = 0; i < ancestors.length; i++) {
+            var ancestor = ancestors[i];
+            var distance = ancestorDistances[i] + 1;
+            if (distances[ancestor] == 0 || distance < distances[ancestor]) {
+                values[ancestor] = value;
+                distances[ancestor] = distance;
+            }
+        }
+    }
+
+    private void rebuild() {
+        Arrays.fill(values, null);
+        Arrays.fill(distances, 0);
+        for (int i = 0; i < exact.length; i++) {
+            if (exact[i] != null)
+                provide(ContextType.byIndex(i), exact[i]);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= exact.length) return;
+        // Types registered after the context was created
+        var length = Math.max(capacity, ContextType.count());
+        exact = Arrays.copyOf(exact, length);
+        values = Arrays.copyOf(values, length);
+        distances = Arrays.copyOf(distances, length);
     }
 
     public static class Builder {
@@ -53,13 +143,53 @@ public class Context {
             return this;
         }
 
+        /**
+         * Adds a value that is only computed if a node uses it. The supplier is called at most once.
+         */
+        public <T> Builder putLazy(ContextType<T> type, Supplier<? extends T> supplier) {
+            map.put(type, new Lazy(type, supplier));
+            return this;
+        }
+
         public Builder putAll(Context context) {
-            map.putAll(context.map);
+            context.forEachRaw(map::put);
             return this;
         }
 
         public Context build() {
-            return new Context(Map.copyOf(map));
+            return new Context(map);
+        }
+    }
+
+    static final class Lazy {
+        private final ContextType<?> type;
+        @Nullable
+        private Supplier<?> supplier;
+        @Nullable
+        private volatile Object value;
+
+        Lazy(ContextType<?> type, Supplier<?> supplier) {
+            this.type = type;
+            this.supplier = supplier;
+        }
+
+        Object get() {
+            var value = this.value;
+            if (value != null)
+                return value;
+            // Nodes running in parallel might request the value at the same time
+            synchronized (this) {
+                if (this.value == null) {
+                    var computed = Objects.requireNonNull(supplier, "Supplier already used").get();
+                    if (computed == null)
+                        throw new IllegalStateException("Lazy value of context %s was null".formatted(type));
+                    if (!type.type().isInstance(computed))
+                        throw new IllegalStateException("Lazy value of context %s has the wrong type".formatted(type));
+                    this.value = computed;
+                    supplier = null;
+                }
+                return this.value;
+            }
         }
     }
 }
@@ -1,6 +1,8 @@
 package io.github.mattidragon.nodeflow.graph.context;
 
 import io.github.mattidragon.nodeflow.NodeFlow;
+import io.github.mattidragon.nodeflow.graph.effect.EffectQueue;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
 import net.fabricmc.fabric.api.event.registry.FabricRegistryBuilder;
 import net.minecraft.registry.DefaultedRegistry;
 import net.minecraft.registry.Registry;
@@ -11,16 +13,38 @@ import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
-public record ContextType<T>(Class<T> type, ContextType<?>[] parents) {
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A type of context that graphs can use. Each registered type gets a dense index, which contexts use to store their values in arrays.
+ * Indexes are assigned on first use, so types registered directly with {@link Registry#register} work too, as long as they are registered before they're used.
+ */
+public final class ContextType<T> {
     public static final RegistryKey<Registry<ContextType<?>>> KEY = RegistryKey.ofRegistry(NodeFlow.id("context_type"));
     public static final DefaultedRegistry<ContextType<?>> REGISTRY = FabricRegistryBuilder.createDefaulted(KEY, NodeFlow.id("dummy")).buildAndRegister();
+    // Read without locking by contexts on any thread, only written while holding its lock
+    private static final List<ContextType<?>> BY_INDEX = new CopyOnWriteArrayList<>();
 
     public static final ContextType<MinecraftServer> SERVER = register(new ContextType<>(MinecraftServer.class), NodeFlow.id("server"));
     public static final ContextType<World> WORLD = register(new ContextType<>(World.class), NodeFlow.id("world"));
     public static final ContextType<ServerWorld> SERVER_WORLD = register(new ContextType<>(ServerWorld.class, new ContextType[]{ WORLD }), NodeFlow.id("server_world"));
     public static final ContextType<BlockPos> BLOCK_POS = register(new ContextType<>(BlockPos.class), NodeFlow.id("block_pos"));
+    /**
+     * Makes nodes queue their effects instead of applying them. Nodes don't need to require this context, it's checked when they emit effects.
+     */
+    public static final ContextType<EffectQueue> EFFECT_QUEUE = register(new ContextType<>(EffectQueue.class), NodeFlow.id("effect_queue"));
     private static final ContextType<Void> DUMMY = register(new ContextType<>(Void.class), NodeFlow.id("dummy"));
 
+    private final Class<T> type;
+    private final ContextType<?>[] parents;
+    // Written before the index, so they're visible once the index is
+    private volatile int index = -1;
+    // This type and all of its parents, recursively, ordered by distance from this type
+    private int[] ancestors = new int[0];
+    private int[] ancestorDistances = new int[0];
+
     public ContextType(Class<T> type, ContextType<?>[] parents) {
         this.type = type;
         for (var parent : parents) {
@@ -40,9 +64,102 @@ public record ContextType<T>(Class<T> type, ContextType<?>[] parents) {
 
     public static <T> ContextType<T> register(ContextType<T> type, Identifier id) {
         Registry.register(REGISTRY, id, type);
+        // Not needed, but keeps the indexes of types registered here in registration order
+        type.index();
+        return type;
+    }
+
+    private int assignIndex() {
+        synchronized (BY_INDEX) {
+            if (index != -1)
+                return index;
+            if (REGISTRY.getKey(this).isEmpty())
+                return -1;
+            // Parents always get lower indexes, so contexts that have room for a type also have room for its ancestors
+            for (var parent : parents) {
+                parent.index();
+            }
+            var index = BY_INDEX.size();
+            computeAncestors(index);
+            BY_INDEX.add(this);
+            this.index = index;
+            return index;
+        }
+    }
+
+    private void computeAncestors(int index) {
+        var ancestors = new IntArrayList();
+        var distances = new IntArrayList();
+        ancestors.add(index);
+        distances.add(0);
+        var queue = new ArrayList<>(List.of(parents));
+        var queueDistances = new IntArrayList();
+        for (int i = 0; i < parents.length; i++) {
+            queueDistances.add(1);
+        }
+        // Breadth first, so that each ancestor is found at its shortest distance first
+        for (int i = 0; i < queue.size(); i++) {
+            var current = queue.get(i);
+            if (ancestors.contains(current.index)) continue;
+            ancestors.add(current.index);
+            distances.add(queueDistances.getInt(i));
+            for (var parent : current.parents) {
+                queue.add(parent);
+                queueDistances.add(queueDistances.getInt(i) + 1);
+            }
+        }
+        this.ancestors = ancestors.toIntArray();
+        this.ancestorDistances = distances.toIntArray();
+    }
+
+    /**
+     * Returns the number of registered context types. Indexes are always below this.
+     */
+    public static int count() {
+        return BY_INDEX.size();
+    }
+
+    static ContextType<?> byIndex(int index) {
+        return BY_INDEX.get(index);
+    }
+
+    public Class<T> type() {
         return type;
     }
 
+    public ContextType<?>[] parents() {
+        return parents;
+    }
+
+    /**
+     * Returns the dense index of this type, assigning it on first use.
+     * @throws IllegalStateException If this type isn't registered.
+     */
+    public int index() {
+        var index = findIndex();
+        if (index == -1)
+            throw new IllegalStateException("Context type of %s isn't registered".formatted(type.getName()));
+        return index;
+    }
+
+    /**
+     * Returns the dense index of this type like {@link #index()}, or -1 if this type isn't registered. Unregistered types can't have values, so lookups treat them as missing.
+     */
+    public int findIndex() {
+        var index = this.index;
+        return index != -1 ? index : assignIndex();
+    }
+
+    int[] ancestors() {
+        index();
+        return ancestors;
+    }
+
+    int[] ancestorDistances() {
+        index();
+        return ancestorDistances;
+    }
+
     @Override
     public String toString() {
         return REGISTRY.getId(this).toString();
@@ -0,0 +1,44 @@
+package io.github.mattidragon.nodeflow.graph.context;
+
+import java.util.function.Supplier;
+
+/**
+ * A context that can be changed after creation. Meant to be kept and reused between evaluations instead of building a new context every time,
+ * for example by calling {@link #reset()} and putting the values for the next evaluation. Must not be changed while a graph is being evaluated with it.
+ */
+public final class MutableContext extends Context {
+    public MutableContext() {
+        super(ContextType.count());
+    }
+
+    public <T> MutableContext put(ContextType<T> type, T value) {
+        set(type, value);
+        return this;
+    }
+
+    /**
+     * Adds a value that is only computed if a node uses it. The supplier is called at most once, until the value is replaced or the context is reset.
+     */
+    public <T> MutableContext putLazy(ContextType<T> type, Supplier<? extends T> supplier) {
+        set(type, new Lazy(type, supplier));
+        return this;
+    }
+
+    public MutableContext putAll(Context context) {
+        context.forEachRaw(this::set);
+        return this;
+    }
+
+    public MutableContext remove(ContextType<?> type) {
+        unset(type);
+        return this;
+    }
+
+    /**
+     * Removes all values, keeping the storage for reuse.
+     */
+    public MutableContext reset() {
+        clear();
+        return this;
+    }
+}
@@ -0,0 +1,14 @@
+package io.github.mattidragon.nodeflow.graph.effect;
+
+/**
+ * A change to the world requested by a node. Nodes with side effects emit effects instead of changing the world directly,
+ * so that evaluation doesn't have to happen on the server thread. Effects are usually records describing the change.
+ * @see io.github.mattidragon.nodeflow.graph.node.Node.ContextProvider#emit(Effect)
+ */
+@FunctionalInterface
+public interface Effect {
+    /**
+     * Applies the effect. Always called on the server thread, unless the graph is evaluated elsewhere without an {@link EffectQueue}.
+     */
+    void apply();
+}
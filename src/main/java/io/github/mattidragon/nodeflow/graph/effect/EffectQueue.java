@@ -0,0 +1,54 @@
+package io.github.mattidragon.nodeflow.graph.effect;
+
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.context.ContextType;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Collects the effects emitted during evaluation, so they can be applied later on the server thread.
+ * When a context contains a queue under {@link io.github.mattidragon.nodeflow.graph.context.ContextType#EFFECT_QUEUE EFFECT_QUEUE}, nodes add their effects to it instead of applying them.
+ * Effects can be added from any thread and are applied in the order they were added.
+ */
+public final class EffectQueue {
+    private final ConcurrentLinkedQueue<Effect> effects = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Queues the effect in the context's queue, or applies it immediately if the context doesn't have one.
+     */
+    public static void emit(Context context, Effect effect) {
+        if (context.contains(ContextType.EFFECT_QUEUE))
+            context.get(ContextType.EFFECT_QUEUE).add(effect);
+        else
+            effect.apply();
+    }
+
+    public void add(Effect effect) {
+        effects.add(effect);
+    }
+
+    public boolean isEmpty() {
+        return effects.isEmpty();
+    }
+
+    public int size() {
+        return effects.size();
+    }
+
+    /**
+     * Discards all queued effects without applying them.
+     */
+    public void clear() {
+        effects.clear();
+    }
+
+    /**
+     * Applies and removes all queued effects. Has to be called on the server thread.
+     */
+    public void applyAll() {
+        Effect effect;
+        while ((effect = effects.poll()) != null) {
+            effect.apply();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.mattidragon.nodeflow.graph.effect;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.server.world.ServerWorld;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
+
+/**
+ * Collects chat messages sent by nodes and delivers them once per tick. Each player gets at most one chat message per tick containing all
+ * distinct messages sent to them, and the players near each broadcast are found using a grid of the players in the world that is built once per tick.
+ * Sink nodes should use this instead of sending messages directly, as many graphs in one area would otherwise scan all players and send a packet for every message.
+ * <p>
+ * Flushed at the end of every server tick, after the {@link io.github.mattidragon.nodeflow.scheduler.GraphScheduler GraphScheduler} has run.
+ */
+public final class MessageBatcher {
+    private static final MessageBatcher INSTANCE = new MessageBatcher();
+    private static final int CELL_BITS = 4;
+
+    // Messages can be sent from any thread if graphs are evaluated without an effect queue
+    private final ConcurrentLinkedQueue<Broadcast> broadcasts = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<PlayerMessage> playerMessages = new ConcurrentLinkedQueue<>();
+
+    private MessageBatcher() {
+    }
+
+    public static MessageBatcher getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sends a message to all players within the radius of the position at the end of the tick.
+     */
+    public void broadcast(ServerWorld world, BlockPos pos, double radius, Text message) {
+        broadcasts.add(new Broadcast(world, pos, radius, message));
+    }
+
+    /**
+     * Sends a message to the player at the end of the tick.
+     */
+    public void send(ServerPlayerEntity player, Text message) {
+        playerMessages.add(new PlayerMessage(player, message));
+    }
+
+    /**
+     * Delivers all collected messages. Called automatically at the end of each server tick.
+     */
+    public void flush() {
+        if (broadcasts.isEmpty() && playerMessages.isEmpty()) return;
+
+        var received = new LinkedHashMap<ServerPlayerEntity, Set<Text>>();
+        PlayerMessage message;
+        while ((message = playerMessages.poll()) != null) {
+            received.computeIfAbsent(message.player, player -> new LinkedHashSet<>()).add(message.text);
+        }
+
+        var grids = new HashMap<ServerWorld, Long2ObjectOpenHashMap<List<ServerPlayerEntity>>>();
+        var seen = new HashSet<Broadcast>();
+        Broadcast broadcast;
+        while ((broadcast = broadcasts.poll()) != null) {
+            // Identical broadcasts would reach the same players with the same message
+            if (!seen.add(broadcast)) continue;
+            var grid = grids.computeIfAbsent(broadcast.world, world -> buildGrid(world.getPlayers(), ServerPlayerEntity::getPos));
+            collectNearby(grid, ServerPlayerEntity::getPos, broadcast.pos, broadcast.radius, broadcast.text, received);
+        }
+
+        received.forEach((player, texts) -> player.sendMessage(join(texts)));
+    }
+
+    /**
+     * Discards all collected messages. Called automatically when the server stops.
+     */
+    public void clear() {
+        broadcasts.clear();
+        playerMessages.clear();
+    }
+
+    /**
+     * Sorts players into cells of the grid by their position.
+     */
+    static <P> Long2ObjectOpenHashMap<List<P>> buildGrid(Iterable<? extends P> players, Function<? super P, Vec3d> position) {
+        var grid = new Long2ObjectOpenHashMap<List<P>>();
+        for (P player : players) {
+            var pos = position.apply(player);
+            var key = cellKey(cell(pos.getX()), cell(pos.getY()), cell(pos.getZ()));
+            var cell = grid.get(key);
+            if (cell == null) {
+                cell = new ArrayList<>();
+                grid.put(key, cell);
+            }
+            cell.add(player);
+        }
+        return grid;
+    }
+
+    /**
+     * Adds the message to the messages of every player in the grid within the radius of the position. Only the cells overlapping the radius are checked.
+     */
+    static <P, M> void collectNearby(Long2ObjectOpenHashMap<List<P>> grid, Function<? super P, Vec3d> position, BlockPos pos, double radius, M message, Map<P, Set<M>> received) {
+        // The distance is measured from somewhere within the block, so the far side of the block is included in the range
+        var minX = cell(pos.getX() - radius);
+        var minY = cell(pos.getY() - radius);
+        var minZ = cell(pos.getZ() - radius);
+        var maxX = cell(pos.getX() + 1 + radius);
+        var maxY = cell(pos.getY() + 1 + radius);
+        var maxZ = cell(pos.getZ() + 1 + radius);
+        var radiusSquared = radius * radius;
+
+        for (int x = minX; x <= maxX; x++) {
+            for (int y = minY; y <= maxY; y++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    var cell = grid.get(cellKey(x, y, z));
+                    if (cell == null) continue;
+                    for (var player : cell) {
+                        if (pos.getSquaredDistance(position.apply(player)) < radiusSquared)
+                            received.computeIfAbsent(player, key -> new LinkedHashSet<>()).add(message);
+                    }
+                }
+            }
+        }
+    }
+
+    private static Text join(Set<Text> texts) {
+        if (texts.size() == 1)
+            return texts.iterator().next();
+
+        var joined = Text.empty();
+        var first = true;
+        for (var text : texts) {
+            if (!first)
+                joined.append("\n");
+            joined.append(text);
+            first = false;
+        }
+        return joined;
+    }
+
+    private static int cell(double coordinate) {
+        return (int) Math.floor(coordinate) >> CELL_BITS;
+    }
+
+    private static long cellKey(int x, int y, int z) {
+        return ((long) x & 0x1FFFFF) << 42 | ((long) y & 0x1FFFFF) << 21 | (long) z & 0x1FFFFF;
+    }
+
+    private record Broadcast(ServerWorld world, BlockPos pos, double radius, Text text) {
+    }
+
+    private record PlayerMessage(ServerPlayerEntity player, Text text) {
+    }
+}
@@ -0,0 +1,81 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+/**
+ * Gives a {@link PrimitiveNode} access to the number and boolean lanes of a batch evaluation. Each slot has a column with one value for each context of the batch.
+ * Like {@link PrimitiveFrame}, the same frame is reused for every node, so it must not be kept after processing.
+ */
+public final class ColumnFrame {
+    final double[][] numbers;
+    final boolean[][] booleans;
+    // Used to process nodes without column support one row at a time
+    private final PrimitiveFrame rowFrame;
+    int[] inputSlots;
+    int outputSlot;
+    int outputCount;
+    int length;
+
+    ColumnFrame(byte[] slotLanes, int capacity) {
+        numbers = new double[slotLanes.length][];
+        booleans = new boolean[slotLanes.length][];
+        for (int slot = 0; slot < slotLanes.length; slot++) {
+            if (slotLanes[slot] == ExecutionPlan.LANE_NUMBER)
+                numbers[slot] = new double[capacity];
+            else if (slotLanes[slot] == ExecutionPlan.LANE_BOOLEAN)
+                booleans[slot] = new boolean[capacity];
+        }
+        rowFrame = new PrimitiveFrame(slotLanes.length);
+    }
+
+    /**
+     * Returns the amount of values to process in each column. The arrays might be longer than this.
+     */
+    public int length() {
+        return length;
+    }
+
+    public double[] getNumbers(int input) {
+        return numbers[inputSlots[input]];
+    }
+
+    public boolean[] getBooleans(int input) {
+        return booleans[inputSlots[input]];
+    }
+
+    public double[] getNumberOutput(int output) {
+        return numbers[outputSlot + output];
+    }
+
+    public boolean[] getBooleanOutput(int output) {
+        return booleans[outputSlot + output];
+    }
+
+    /**
+     * Processes a node one row at a time using {@link PrimitiveNode#processPrimitive}.
+     */
+    void processRows(PrimitiveNode node) {
+        for (int row = 0; row < length; row++) {
+            node.processPrimitive(loadRow(row));
+            for (int slot = outputSlot; slot < outputSlot + outputCount; slot++) {
+                if (numbers[slot] != null)
+                    numbers[slot][row] = rowFrame.numbers[slot];
+                else
+                    booleans[slot][row] = rowFrame.booleans[slot];
+            }
+        }
+    }
+
+    /**
+     * Loads the inputs of one row into a frame that the current node can be processed with.
+     */
+    PrimitiveFrame loadRow(int row) {
+        rowFrame.inputSlots = inputSlots;
+        rowFrame.outputSlot = outputSlot;
+        for (var slot : inputSlots) {
+            if (numbers[slot] != null)
+                rowFrame.numbers[slot] = numbers[slot][row];
+            else
+                rowFrame.booleans[slot] = booleans[slot][row];
+        }
+        return rowFrame;
+    }
+}
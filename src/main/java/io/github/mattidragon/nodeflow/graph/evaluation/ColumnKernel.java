@@ -0,0 +1,10 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+/**
+ * Processes whole columns of a batch evaluation at once, replacing {@link PrimitiveNode#processColumns} for a node type.
+ * @see ColumnKernels#registerKernel
+ */
+@FunctionalInterface
+public interface ColumnKernel {
+    void apply(ColumnFrame frame);
+}
@@ -0,0 +1,71 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.NodeFlow;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of {@link ColumnKernel column kernels} used by batch evaluation. When the {@code jdk.incubator.vector} module is available, the built-in math and logic nodes get kernels using the vector api.
+ * Otherwise they fall back to plain loops over the columns. The module isn't added by default, servers have to opt in with {@code --add-modules=jdk.incubator.vector}.
+ */
+public final class ColumnKernels {
+    private static final Map<NodeType<?>, ColumnKernel> KERNELS = new ConcurrentHashMap<>();
+    // Kernels of the built-in ops, only filled during class initialization
+    private static final Map<PrimitiveOp, ColumnKernel> OP_KERNELS = new EnumMap<>(PrimitiveOp.class);
+    // Compiled in its own source set with the vector module, so it can only be loaded reflectively
+    private static final String VECTOR_KERNELS = "io.github.mattidragon.nodeflow.graph.evaluation.VectorKernels";
+    private static final boolean VECTORIZED;
+
+    static {
+        var vectorized = false;
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                Class.forName(VECTOR_KERNELS).getDeclaredMethod("register").invoke(null);
+                vectorized = true;
+            } catch (ReflectiveOperationException | LinkageError e) {
+                NodeFlow.LOGGER.debug("Failed to load vector kernels, falling back to scalar kernels", e);
+            }
+        }
+        VECTORIZED = vectorized;
+    }
+
+    private ColumnKernels() {
+    }
+
+    /**
+     * Registers a kernel for a node type. The type has to be a {@link PrimitiveNode}, and the kernel has to give the same results as {@link PrimitiveNode#processPrimitive}.
+     * Takes precedence over the kernel of the {@link PrimitiveOp} of the node. Safe to call from any thread.
+     */
+    public static void registerKernel(NodeType<?> type, ColumnKernel kernel) {
+        KERNELS.put(type, kernel);
+    }
+
+    static void registerKernel(PrimitiveOp op, ColumnKernel kernel) {
+        OP_KERNELS.put(op, kernel);
+    }
+
+    /**
+     * Whether the vector api is used for the built-in nodes.
+     */
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    @Nullable
+    static ColumnKernel getKernel(PrimitiveNode node) {
+        var kernel = KERNELS.get(((Node) node).type);
+        if (kernel == null && node.getOp() != null)
+            kernel = getKernel(node.getOp());
+        return kernel;
+    }
+
+    @Nullable
+    static ColumnKernel getKernel(PrimitiveOp op) {
+        return OP_KERNELS.get(op);
+    }
+}
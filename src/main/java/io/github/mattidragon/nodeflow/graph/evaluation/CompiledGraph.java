@@ -0,0 +1,85 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.data.DataType;
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.misc.EvaluationError;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A graph compiled to a hidden class by the {@link GraphCompiler}. Like the {@link ExecutionPlan} it was compiled from, it's discarded as soon as the graph changes.
+ * @see Graph#evaluateCompiled(Context)
+ */
+public final class CompiledGraph {
+    private static final DataValue<Boolean> TRUE = DataType.BOOLEAN.makeValue(true);
+    private static final DataValue<Boolean> FALSE = DataType.BOOLEAN.makeValue(false);
+
+    private final ExecutionPlan plan;
+    private final MethodHandle constructor;
+    // Generated bodies hold reusable input arrays and sinks, so each one is only used by one evaluation at a time
+    private final AtomicReference<Body> idleBody = new AtomicReference<>();
+
+    CompiledGraph(ExecutionPlan plan, MethodHandle constructor) {
+        this.plan = plan;
+        this.constructor = constructor;
+    }
+
+    /**
+     * Evaluates the compiled graph. Behaves the same as {@link ExecutionPlan#evaluate(Context)}.
+     */
+    public List<EvaluationError> evaluate(Context context) {
+        var error = plan.validate();
+        if (error != null)
+            return List.of(error);
+
+        var body = acquireBody();
+        try {
+            body.run(context);
+        } catch (EvaluationFailure failure) {
+            return List.of(failure.error);
+        } finally {
+            idleBody.set(body);
+        }
+        return plan.checkResolved();
+    }
+
+    private Body acquireBody() {
+        var body = idleBody.getAndSet(null);
+        if (body != null)
+            return body;
+        try {
+            return (Body) constructor.invoke(plan.order, plan.outputs, plan.foldedValues, plan.usedOutputs, plan.createSinks());
+        } catch (Throwable e) {
+            throw new IllegalStateException("Failed to instantiate compiled graph", e);
+        }
+    }
+
+    // Helpers called from generated code
+
+    static DataValue<?> boxNumber(double value) {
+        return DataType.NUMBER.makeValue(value);
+    }
+
+    static DataValue<?> boxBoolean(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    static double unboxNumber(DataValue<?> value) {
+        return value.getAs(DataType.NUMBER);
+    }
+
+    static boolean unboxBoolean(DataValue<?> value) {
+        return value.getAs(DataType.BOOLEAN);
+    }
+
+    /**
+     * Implemented by the generated classes.
+     */
+    interface Body {
+        void run(Context context);
+    }
+}
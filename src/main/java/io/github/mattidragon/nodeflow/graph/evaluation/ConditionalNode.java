@@ -0,0 +1,30 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+
+/**
+ * Can be implemented by {@link Node nodes} that only need some of their inputs depending on the values of other inputs.
+ * Nodes that only feed an input that isn't needed are skipped during evaluation, unless they have side effects or are used elsewhere.
+ * Conditional nodes that support primitive evaluation have to implement {@link PrimitiveConditionalNode} instead.
+ */
+public interface ConditionalNode {
+    /**
+     * Whether this node currently has conditional inputs.
+     */
+    default boolean isConditional() {
+        return true;
+    }
+
+    /**
+     * Whether an input is only needed in some cases. The values of conditional inputs can't be used to decide which inputs are needed.
+     */
+    boolean isConditionalInput(int input);
+
+    /**
+     * Decides whether a conditional input is needed.
+     * @param inputs The values of the inputs of the node. Conditional inputs are always null here.
+     * @return Whether the input is needed. If not, it will be null when the node is processed.
+     */
+    boolean isInputNeeded(int input, DataValue<?>[] inputs);
+}
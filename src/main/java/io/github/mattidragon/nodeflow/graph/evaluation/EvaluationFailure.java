@@ -0,0 +1,16 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.misc.EvaluationError;
+
+/**
+ * Thrown internally to abort an evaluation with an error. Never escapes the evaluation methods.
+ */
+final class EvaluationFailure extends RuntimeException {
+    final EvaluationError error;
+
+    EvaluationFailure(EvaluationError error) {
+        // Only used for control flow, so the stack trace is skipped
+        super(null, null, false, false);
+        this.error = error;
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+
+/**
+ * Controls which nodes of a graph are evaluated.
+ */
+public enum EvaluationMode {
+    /**
+     * Evaluates every node of the graph. Any broken node prevents evaluation.
+     */
+    FULL,
+    /**
+     * Only evaluates nodes that have {@link NodeType#sideEffects() side effects} and the nodes they depend on.
+     * Other nodes are neither evaluated nor validated, so unfinished branches that don't lead anywhere don't prevent evaluation.
+     */
+    LIVE
+}
@@ -0,0 +1,1536 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import com.mojang.datafixers.util.Either;
+import io.github.mattidragon.nodeflow.NodeFlow;
+import io.github.mattidragon.nodeflow.graph.Connector;
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.context.ContextType;
+import io.github.mattidragon.nodeflow.graph.data.DataType;
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import io.github.mattidragon.nodeflow.misc.EvaluationError;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.objects.Object2IntMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * A precompiled form of a {@link Graph} that can be evaluated without analysing the graph again.
+ * Contains the order in which nodes run and how their outputs are wired to the inputs of other nodes.
+ * Plans are cached by {@link Graph#getExecutionPlan()} and discarded whenever the structure of the graph changes, so they should not be held onto.
+ */
+public final class ExecutionPlan {
+    static final byte LANE_NONE = 0;
+    static final byte LANE_NUMBER = 1;
+    static final byte LANE_BOOLEAN = 2;
+    private static final DataValue<Boolean> TRUE = DataType.BOOLEAN.makeValue(true);
+    private static final DataValue<Boolean> FALSE = DataType.BOOLEAN.makeValue(false);
+    /**
+     * How many steps have to be able to run in parallel for parallel evaluation to be used at all.
+     */
+    private static final int PARALLEL_THRESHOLD = 16;
+    /**
+     * How many steps of a wave have to be able to run in parallel for the wave to be split up.
+     */
+    private static final int PARALLEL_WAVE_THRESHOLD = 2;
+
+    final Graph graph;
+    final Node[] order;
+    /**
+     * The step of each node in the plan.
+     */
+    private final Object2IntMap<Node> stepIndices;
+    /**
+     * The first step of each wave. Steps in the same wave don't depend on each other.
+     */
+    private final int[] waveStarts;
+    final Connector<?>[][] inputs;
+    final Connector<?>[][] outputs;
+    /**
+     * For each step and input, the slot the value is read from, or {@code -1} if the input isn't connected.
+     */
+    final int[][] inputSlots;
+    /**
+     * For each step, the slot of its first output. The other outputs follow it in order.
+     */
+    final int[] outputSlots;
+    final int slotCount;
+    /**
+     * For each slot, the step that writes it.
+     */
+    final int[] slotProducers;
+    /**
+     * For each step, the node if it's evaluated on primitive lanes, otherwise null.
+     */
+    final PrimitiveNode[] primitiveNodes;
+    /**
+     * For each slot, the primitive lane it has, if any.
+     */
+    final byte[] slotLanes;
+    /**
+     * Slots written by generic nodes that have to be copied to their primitive lane for primitive nodes.
+     */
+    final boolean[] unboxedSlots;
+    /**
+     * Slots written by primitive nodes that have to be boxed for generic nodes.
+     */
+    final boolean[] boxedSlots;
+    /**
+     * For each step, whether it's a duplicate of an earlier step. Consumers of duplicates read the outputs of the earlier step instead.
+     */
+    final boolean[] merged;
+    private final int mergedCount;
+    /**
+     * For each step, which of its outputs are read by other steps. Null if all of them are.
+     */
+    final BitSet[] usedOutputs;
+    /**
+     * For each step, whether it was evaluated ahead of time by constant folding.
+     */
+    final boolean[] folded;
+    /**
+     * For each slot, the value computed by constant folding, if any.
+     */
+    final DataValue<?>[] foldedValues;
+    /**
+     * For each step, whether a node with side effects depends on it.
+     */
+    final boolean[] live;
+    /**
+     * For each step, whether it only feeds a conditional input and is therefore only run when that input is needed.
+     */
+    final boolean[] guarded;
+    /**
+     * For each conditional step and input, the steps that only feed that input, in evaluation order. Null for other steps.
+     */
+    final int[][][] guardedSteps;
+    /**
+     * For each step, whether incremental evaluation has to run it even if its inputs are unchanged.
+     */
+    private final boolean[] alwaysEvaluated;
+    /**
+     * For each step, whether it can run on another thread during parallel evaluation.
+     */
+    private final boolean[] parallelSteps;
+    private final int parallelStepCount;
+    private final boolean fullyConnected;
+    private final boolean liveFullyConnected;
+    final boolean mismatchedConnections;
+    private final boolean liveMismatchedConnections;
+    private final Set<ContextType<?>> requiredContexts;
+    // Validation results for each mode. Every modification of the graph discards the plan, so they stay valid for as long as the plan exists.
+    private final AtomicReferenceArray<Verdict> verdicts = new AtomicReferenceArray<>(EvaluationMode.values().length);
+    // Sessions are reused between evaluations so that steady state evaluation doesn't allocate buffers
+    private final AtomicReference<EvaluationSession> idleSession = new AtomicReference<>();
+    private final AtomicReference<BatchSession> idleBatchSession = new AtomicReference<>();
+    private final AtomicBoolean incrementalInUse = new AtomicBoolean();
+    @Nullable
+    private IncrementalState incrementalState = null;
+    // Can be released by another thread when the plan is demoted
+    @Nullable
+    private volatile CompiledGraph compiled = null;
+    private boolean compilationFailed = false;
+    // Can be released by another thread when the plan goes cold
+    @Nullable
+    private volatile RegisterProgram program = null;
+    private boolean assemblyFailed = false;
+    // State of tiered evaluation, see TieredExecution
+    private final AtomicInteger tieredEvaluations = new AtomicInteger();
+    private volatile ExecutionTier tier = ExecutionTier.INTERPRETED;
+    volatile long lastUsed;
+    volatile long lastUsedTick;
+
+    private ExecutionPlan(Graph graph, Node[] order, Object2IntMap<Node> stepIndices, int[] waveStarts, Connector<?>[][] inputs, Connector<?>[][] outputs, int[][] inputSlots, int[] outputSlots, int slotCount, int[] slotProducers, PrimitiveNode[] primitiveNodes, byte[] slotLanes, boolean[] unboxedSlots, boolean[] boxedSlots, boolean[] merged, int mergedCount, BitSet[] usedOutputs, boolean[] folded, DataValue<?>[] foldedValues, boolean[] live, boolean[] guarded, int[][][] guardedSteps, boolean[] alwaysEvaluated, boolean[] parallelSteps, int parallelStepCount, boolean fullyConnected, boolean liveFullyConnected, boolean mismatchedConnections, boolean liveMismatchedConnections, Set<ContextType<?>> requiredContexts) {
+        this.graph = graph;
+        this.order = order;
+        this.stepIndices = stepIndices;
+        this.waveStarts = waveStarts;
+        this.inputs = inputs;
+        this.outputs = outputs;
+        this.inputSlots = inputSlots;
+        this.outputSlots = outputSlots;
+        this.slotCount = slotCount;
+        this.slotProducers = slotProducers;
+        this.primitiveNodes = primitiveNodes;
+        this.slotLanes = slotLanes;
+        this.unboxedSlots = unboxedSlots;
+        this.boxedSlots = boxedSlots;
+        this.merged = merged;
+        this.mergedCount = mergedCount;
+        this.usedOutputs = usedOutputs;
+        this.folded = folded;
+        this.foldedValues = foldedValues;
+        this.live = live;
+        this.guarded = guarded;
+        this.guardedSteps = guardedSteps;
+        this.alwaysEvaluated = alwaysEvaluated;
+        this.parallelSteps = parallelSteps;
+        this.parallelStepCount = parallelStepCount;
+        this.fullyConnected = fullyConnected;
+        this.liveFullyConnected = liveFullyConnected;
+        this.mismatchedConnections = mismatchedConnections;
+        this.liveMismatchedConnections = liveMismatchedConnections;
+        this.requiredContexts = requiredContexts;
+    }
+
+    /**
+     * Analyses the current structure of a graph. Usually you want {@link Graph#getExecutionPlan()} instead, which caches the result.
+     */
+    public static ExecutionPlan create(Graph graph) {
+        var nodes = graph.getNodes();
+        var fullyConnected = nodes.stream().allMatch(Node::isFullyConnected);
+        var requiredContexts = new LinkedHashSet<ContextType<?>>();
+        for (var node : nodes) {
+            requiredContexts.addAll(node.contexts);
+        }
+
+        // Count connected inputs of all nodes
+        var inputCounts = new Object2IntOpenHashMap<Node>(nodes.size());
+        inputCounts.defaultReturnValue(0);
+        for (var node : nodes) {
+            for (var output : node.getOutputs()) {
+                for (var connection : graph.getConnections(output)) {
+                    inputCounts.addTo(graph.getNode(connection.targetUuid()), 1);
+                }
+            }
+        }
+
+        // Sort nodes in waves, the same way they used to be evaluated
+        var order = new ArrayList<Node>(nodes.size());
+        var waveStarts = new IntArrayList();
+        var readyNodes = nodes.stream().filter(node -> inputCounts.getInt(node) == 0).toList();
+        while (!readyNodes.isEmpty()) {
+            waveStarts.add(order.size());
+            var nextNodes = new ArrayList<Node>();
+            for (var node : readyNodes) {
+                order.add(node);
+                for (var output : node.getOutputs()) {
+                    for (var connection : graph.getConnections(output)) {
+                        var target = graph.getNode(connection.targetUuid());
+                        if (inputCounts.addTo(target, -1) == 1)
+                            nextNodes.add(target);
+                    }
+                }
+            }
+            readyNodes = nextNodes;
+        }
+
+        var steps = order.size();
+        var stepIndices = new Object2IntOpenHashMap<Node>(steps);
+        stepIndices.defaultReturnValue(-1);
+        var inputs = new Connector<?>[steps][];
+        var outputs = new Connector<?>[steps][];
+        var outputSlots = new int[steps];
+        var slotCount = 0;
+        for (int i = 0; i < steps; i++) {
+            var node = order.get(i);
+            stepIndices.put(node, i);
+            inputs[i] = node.getInputs();
+            outputs[i] = node.getOutputs();
+            outputSlots[i] = slotCount;
+            slotCount += outputs[i].length;
+        }
+
+        // Wire inputs to the slots of the outputs they read
+        var mismatchedSteps = new boolean[steps];
+        var inputSlots = new int[steps][];
+        for (int i = 0; i < steps; i++) {
+            inputSlots[i] = new int[inputs[i].length];
+            Arrays.fill(inputSlots[i], -1);
+            for (int j = 0; j < inputs[i].length; j++) {
+                var input = inputs[i][j];
+                for (var connection : graph.getConnections(input)) {
+                    var source = connection.getSourceConnector(graph);
+                    if (source == null) continue;
+                    if (source.type() != input.type())
+                        mismatchedSteps[i] = true;
+                    var sourceStep = stepIndices.getInt(source.parent());
+                    if (sourceStep == -1) continue;
+                    inputSlots[i][j] = outputSlots[sourceStep] + indexOf(outputs[sourceStep], source);
+                }
+            }
+        }
+
+        // Merge pure nodes with the same type, configuration and inputs
+        var merged = new boolean[steps];
+        var mergedCount = 0;
+        var slotAliases = new int[slotCount];
+        for (int i = 0; i < slotCount; i++) {
+            slotAliases[i] = i;
+        }
+        var canonicalSteps = new HashMap<MergeKey, Integer>();
+        for (int i = 0; i < steps; i++) {
+            for (int j = 0; j < inputSlots[i].length; j++) {
+                if (inputSlots[i][j] != -1)
+                    inputSlots[i][j] = slotAliases[inputSlots[i][j]];
+            }
+
+            var node = order.get(i);
+            if (!node.type.pure() || !node.contexts.isEmpty() || mismatchedSteps[i]) continue;
+            var canonical = canonicalSteps.putIfAbsent(new MergeKey(node.type, getConfig(node), IntList.of(inputSlots[i])), i);
+            if (canonical == null) continue;
+            merged[i] = true;
+            mergedCount++;
+            for (int j = 0; j < outputs[i].length; j++) {
+                slotAliases[outputSlots[i] + j] = outputSlots[canonical] + j;
+            }
+        }
+        if (mergedCount > 0)
+            NodeFlow.LOGGER.debug("Merged {} duplicate nodes out of {}", mergedCount, steps);
+
+        // Find the outputs that something reads, so that nodes can skip the rest
+        var readSlots = new boolean[slotCount];
+        for (int i = 0; i < steps; i++) {
+            if (merged[i]) continue;
+            for (var slot : inputSlots[i]) {
+                if (slot != -1)
+                    readSlots[slot] = true;
+            }
+        }
+        var usedOutputs = new BitSet[steps];
+        for (int i = 0; i < steps; i++) {
+            var used = new BitSet(outputs[i].length);
+            for (int j = 0; j < outputs[i].length; j++) {
+                if (readSlots[outputSlots[i] + j])
+                    used.set(j);
+            }
+            // Null means all outputs are used, which skips the checks
+            if (used.cardinality() < outputs[i].length)
+                usedOutputs[i] = used;
+        }
+
+        var mismatchedConnections = false;
+        for (var mismatched : mismatchedSteps) {
+            mismatchedConnections |= mismatched;
+        }
+
+        // Decide which nodes run on primitive lanes and where values have to cross between lanes
+        var slotLanes = new byte[slotCount];
+        var slotProducers = new int[slotCount];
+        for (int i = 0; i < steps; i++) {
+            for (int j = 0; j < outputs[i].length; j++) {
+                slotLanes[outputSlots[i] + j] = laneOf(outputs[i][j]);
+                slotProducers[outputSlots[i] + j] = i;
+            }
+        }
+        var primitiveNodes = new PrimitiveNode[steps];
+        for (int i = 0; i < steps; i++) {
+            if (merged[i]) continue;
+            if (order.get(i) instanceof PrimitiveNode primitiveNode && primitiveNode.isPrimitive()
+                    && (!(primitiveNode instanceof ConditionalNode conditional) || !conditional.isConditional() || primitiveNode instanceof PrimitiveConditionalNode)
+                    && Arrays.stream(inputs[i]).allMatch(input -> laneOf(input) != LANE_NONE)
+                    && Arrays.stream(outputs[i]).allMatch(output -> laneOf(output) != LANE_NONE)
+                    && Arrays.stream(inputSlots[i]).noneMatch(slot -> slot == -1))
+                primitiveNodes[i] = primitiveNode;
+        }
+        var unboxedSlots = new boolean[slotCount];
+        var boxedSlots = new boolean[slotCount];
+        for (int i = 0; i < steps; i++) {
+            for (var slot : inputSlots[i]) {
+                if (slot == -1) continue;
+                var producedPrimitive = primitiveNodes[slotProducers[slot]] != null;
+                if (primitiveNodes[i] != null && !producedPrimitive)
+                    unboxedSlots[slot] = true;
+                if (primitiveNodes[i] == null && producedPrimitive)
+                    boxedSlots[slot] = true;
+            }
+        }
+
+        // Evaluate pure nodes that only depend on other pure nodes ahead of time
+        var folded = new boolean[steps];
+        var foldedValues = new DataValue<?>[slotCount];
+        if (!mismatchedConnections) {
+            for (int i = 0; i < steps; i++) {
+                if (merged[i]) continue;
+                var results = tryFold(order.get(i), inputs[i].length, inputSlots[i], outputs[i], foldedValues);
+                if (results == null) continue;
+                folded[i] = true;
+                System.arraycopy(results, 0, foldedValues, outputSlots[i], results.length);
+            }
+        }
+
+        // Find the nodes that side effects depend on. Producers always come before their consumers, so one backwards pass is enough
+        var live = new boolean[steps];
+        var liveFullyConnected = true;
+        var liveMismatchedConnections = false;
+        for (int i = steps - 1; i >= 0; i--) {
+            if (order.get(i).type.sideEffects())
+                live[i] = true;
+            if (!live[i]) continue;
+            liveFullyConnected &= order.get(i).isFullyConnected();
+            liveMismatchedConnections |= mismatchedSteps[i];
+            for (var slot : inputSlots[i]) {
+                if (slot != -1)
+                    live[slotProducers[slot]] = true;
+            }
+        }
+
+        // Find the steps that are only needed by conditional inputs
+        var conditionalNodes = new ConditionalNode[steps];
+        for (int i = 0; i < steps; i++) {
+            if (order.get(i) instanceof ConditionalNode conditionalNode && conditionalNode.isConditional() && !merged[i] && !folded[i])
+                conditionalNodes[i] = conditionalNode;
+        }
+        var consumers = new ArrayList<List<int[]>>(steps);
+        for (int i = 0; i < steps; i++) {
+            consumers.add(new ArrayList<>());
+        }
+        for (int i = 0; i < steps; i++) {
+            if (merged[i] || folded[i]) continue;
+            for (int j = 0; j < inputSlots[i].length; j++) {
+                if (inputSlots[i][j] != -1)
+                    consumers.get(slotProducers[inputSlots[i][j]]).add(new int[] { i, j });
+            }
+        }
+        // Guards are encoded as step and input index. Consumers come after producers, so one backwards pass is enough
+        var guards = new long[steps];
+        Arrays.fill(guards, -1);
+        for (int i = steps - 1; i >= 0; i--) {
+            if (merged[i] || folded[i] || order.get(i).type.sideEffects() || consumers.get(i).isEmpty()) continue;
+            var guard = -2L;
+            for (var consumer : consumers.get(i)) {
+                var consumerStep = consumer[0];
+                var input = consumer[1];
+                var consumerGuard = conditionalNodes[consumerStep] != null && conditionalNodes[consumerStep].isConditionalInput(input)
+                        ? (long) consumerStep << 32 | input
+                        : guards[consumerStep];
+                if (consumerGuard == -1 || guard != -2 && guard != consumerGuard) {
+                    guard = -1;
+                    break;
+                }
+                guard = consumerGuard;
+            }
+            guards[i] = guard;
+        }
+        var guarded = new boolean[steps];
+        var guardedStepLists = new ArrayList<List<IntList>>(steps);
+        for (int i = 0; i < steps; i++) {
+            guardedStepLists.add(null);
+            if (conditionalNodes[i] == null) continue;
+            var lists = new ArrayList<IntList>(inputs[i].length);
+            for (int j = 0; j < inputs[i].length; j++) {
+                lists.add(new IntArrayList());
+            }
+            guardedStepLists.set(i, lists);
+        }
+        for (int i = 0; i < steps; i++) {
+            if (guards[i] < 0) continue;
+            guarded[i] = true;
+            guardedStepLists.get((int) (guards[i] >>> 32)).get((int) guards[i]).add(i);
+        }
+        var guardedSteps = new int[steps][][];
+        for (int i = 0; i < steps; i++) {
+            var lists = guardedStepLists.get(i);
+            if (lists != null)
+                guardedSteps[i] = lists.stream().map(IntList::toIntArray).toArray(int[][]::new);
+        }
+
+        var alwaysEvaluated = new boolean[steps];
+        for (int i = 0; i < steps; i++) {
+            var type = order.get(i).type;
+            alwaysEvaluated[i] = type.sideEffects() ? !type.idempotent() : !type.pure();
+        }
+
+        // Primitive nodes share the frame and are cheap anyway, so only generic nodes without side effects are worth running in parallel.
+        // Conditional steps decide which of their guarded steps run, so both of them stay on the calling thread
+        var parallelSteps = new boolean[steps];
+        var parallelStepCount = 0;
+        for (int i = 0; i < steps; i++) {
+            parallelSteps[i] = !merged[i] && !folded[i] && !guarded[i] && guardedSteps[i] == null && primitiveNodes[i] == null && !order.get(i).type.sideEffects();
+            if (parallelSteps[i])
+                parallelStepCount++;
+        }
+
+        return new ExecutionPlan(graph, order.toArray(Node[]::new), stepIndices, waveStarts.toIntArray(), inputs, outputs, inputSlots, outputSlots, slotCount, slotProducers, primitiveNodes, slotLanes, unboxedSlots, boxedSlots, merged, mergedCount, usedOutputs, folded, foldedValues, live, guarded, guardedSteps, alwaysEvaluated, parallelSteps, parallelStepCount, fullyConnected, liveFullyConnected, mismatchedConnections, liveMismatchedConnections, Collections.unmodifiableSet(requiredContexts));
+    }
+
+    /**
+     * Returns the configuration of a node, as in its saved data without anything that doesn't affect evaluation.
+     */
+    private static NbtCompound getConfig(Node node) {
+        var config = new NbtCompound();
+        node.writeNbt(config);
+        config.remove("id");
+        config.remove("guiX");
+        config.remove("guiY");
+        config.remove("tag");
+        config.remove("nickname");
+        return config;
+    }
+
+    @Nullable
+    private static DataValue<?>[] tryFold(Node node, int inputCount, int[] inputSlots, Connector<?>[] outputs, DataValue<?>[] foldedValues) {
+        if (!node.type.pure() || !node.contexts.isEmpty())
+            return null;
+
+        var inputValues = new DataValue<?>[inputCount];
+        for (int i = 0; i < inputCount; i++) {
+            // Nodes with unconnected inputs usually fail, which is left for the evaluation to report instead of logging it here
+            if (inputSlots[i] == -1)
+                return null;
+            inputValues[i] = foldedValues[inputSlots[i]];
+            if (inputValues[i] == null)
+                return null;
+        }
+
+        // Broken nodes are left for the evaluation to report
+        if (!node.validate().isEmpty())
+            return null;
+        try {
+            return process(node, inputValues, Context.empty(), outputs, null, new OutputSink(node, outputs.length));
+        } catch (EvaluationFailure failure) {
+            return null;
+        }
+    }
+
+    static byte laneOf(Connector<?> connector) {
+        if (connector.type() == DataType.NUMBER) return LANE_NUMBER;
+        if (connector.type() == DataType.BOOLEAN) return LANE_BOOLEAN;
+        return LANE_NONE;
+    }
+
+    private static int indexOf(Connector<?>[] connectors, Connector<?> connector) {
+        for (int i = 0; i < connectors.length; i++) {
+            if (connectors[i].equals(connector))
+                return i;
+        }
+        throw new IllegalStateException("Connector not found on its own node");
+    }
+
+    /**
+     * Returns all contexts used by nodes in the graph. Contexts that aren't in this set don't have to be provided for evaluation.
+     */
+    public Set<ContextType<?>> getRequiredContexts() {
+        return requiredContexts;
+    }
+
+    /**
+     * Returns how many nodes are skipped during evaluation because they are duplicates of other nodes.
+     */
+    public int getMergedNodeCount() {
+        return mergedCount;
+    }
+
+    /**
+     * Returns the nodes of the graph in the order they are evaluated in. Nodes that can't be resolved, for example because they are part of a loop, are not included.
+     */
+    public List<Node> getOrder() {
+        return List.of(order);
+    }
+
+    /**
+     * Evaluates the graph this plan was made from. See {@link Graph#evaluate(Context)}.
+     */
+    public List<EvaluationError> evaluate(Context context) {
+        return evaluate(context, EvaluationMode.FULL);
+    }
+
+    /**
+     * Evaluates the graph this plan was made from. See {@link Graph#evaluate(Context, EvaluationMode)}.
+     */
+    public List<EvaluationError> evaluate(Context context, EvaluationMode mode) {
+        var error = validate(mode);
+        if (error != null)
+            return List.of(error);
+
+        var session = acquireSession();
+        try {
+            run(session, context, mode);
+        } catch (EvaluationFailure failure) {
+            return List.of(failure.error);
+        } finally {
+            idleSession.set(session);
+        }
+        return checkResolved(mode);
+    }
+
+    /**
+     * Evaluates the graph this plan was made from once for each context. See {@link Graph#evaluateBatch(List)}.
+     */
+    public List<List<EvaluationError>> evaluateBatch(List<Context> contexts) {
+        var size = contexts.size();
+        var error = validate();
+        if (error != null)
+            return Collections.nCopies(size, List.of(error));
+
+        var errors = new EvaluationError[size];
+        var session = idleBatchSession.getAndSet(null);
+        if (session == null || session.capacity < size)
+            session = new BatchSession(this, size);
+        try {
+            runBatch(session, contexts, errors);
+        } finally {
+            idleBatchSession.set(session);
+        }
+
+        var resolved = checkResolved();
+        var results = new ArrayList<List<EvaluationError>>(size);
+        for (var contextError : errors) {
+            results.add(contextError == null ? resolved : List.of(contextError));
+        }
+        return results;
+    }
+
+    /**
+     * Evaluates the graph this plan was made from, skipping nodes whose inputs haven't changed. See {@link Graph#evaluateIncremental(Context)}.
+     */
+    public List<EvaluationError> evaluateIncremental(Context context) {
+        // The remembered values can only be used by one evaluation at a time
+        if (!incrementalInUse.compareAndSet(false, true))
+            return evaluate(context);
+
+        try {
+            var error = validate();
+            if (error != null)
+                return List.of(error);
+
+            if (incrementalState == null)
+                incrementalState = new IncrementalState(this);
+            try {
+                runIncremental(incrementalState, context);
+            } catch (EvaluationFailure failure) {
+                // Some outputs might not have been updated, so everything has to run again next time
+                Arrays.fill(incrementalState.evaluated, false);
+                return List.of(failure.error);
+            }
+            return checkResolved();
+        } finally {
+            incrementalInUse.set(false);
+        }
+    }
+
+    /**
+     * Evaluates the graph this plan was made from, running independent nodes of each wave on the given pool. See {@link Graph#evaluateParallel(Context)}.
+     */
+    public List<EvaluationError> evaluateParallel(Context context, ForkJoinPool pool) {
+        if (parallelStepCount < PARALLEL_THRESHOLD)
+            return evaluate(context);
+
+        var error = validate();
+        if (error != null)
+            return List.of(error);
+
+        var session = acquireSession();
+        try {
+            runParallel(session, context, pool);
+        } catch (EvaluationFailure failure) {
+            return List.of(failure.error);
+        } finally {
+            idleSession.set(session);
+        }
+        return checkResolved();
+    }
+
+    /**
+     * Computes the value of a single output, only evaluating the nodes it depends on. See {@link Graph#evaluateOutput(Connector, Context)}.
+     */
+    public Either<DataValue<?>, EvaluationError> evaluateOutput(Connector<?> output, Context context) {
+        if (!output.isOutput())
+            throw new IllegalArgumentException("Connector isn't an output");
+        var step = stepIndices.getInt(output.parent());
+        if (step == -1)
+            return Either.right(EvaluationError.Type.UNRESOLVABLE_NODES.error(order.length, graph.getNodes().size()));
+
+        // Mismatches aren't tracked per node, so reject them like full evaluation does
+        if (mismatchedConnections)
+            return Either.right(EvaluationError.Type.MISMATCHED_CONNECTION_TYPES.error());
+
+        var slot = outputSlots[step] + indexOf(outputs[step], output);
+        // Folded values are already known, everything else is computed at most once
+        var values = foldedValues.clone();
+        var evaluated = folded.clone();
+        try {
+            pull(values, evaluated, context, step);
+        } catch (EvaluationFailure failure) {
+            return Either.right(failure.error);
+        }
+        return Either.left(values[slot]);
+    }
+
+    /**
+     * Evaluates a step for {@link #evaluateOutput}, first evaluating the steps it reads from. Conditional inputs are only evaluated if needed.
+     * Uses an explicit stack instead of recursion, so long chains of nodes can't overflow the call stack.
+     */
+    private void pull(DataValue<?>[] values, boolean[] evaluated, Context context, int target) {
+        var stack = new IntArrayList();
+        // For each started step, its inputs so far, the next unconditional input to check and which conditional inputs are needed
+        var stepInputs = new DataValue<?>[order.length][];
+        var nextInputs = new int[order.length];
+        var neededInputs = new boolean[order.length][];
+        var sinks = new OutputSink[order.length];
+        stack.push(target);
+        while (!stack.isEmpty()) {
+            var step = stack.topInt();
+            // Steps can be pushed again by another step before their first entry is reached
+            if (evaluated[step]) {
+                stack.popInt();
+                continue;
+            }
+            var node = order[step];
+            var slots = inputSlots[step];
+            if (stepInputs[step] == null) {
+                if (!node.isFullyConnected())
+                    throw new EvaluationFailure(EvaluationError.Type.NOT_CONNECTED.error());
+                var configError = validateConfig(node);
+                if (configError != null)
+                    throw new EvaluationFailure(configError);
+                checkContexts(node, context);
+                stepInputs[step] = new DataValue<?>[slots.length];
+                sinks[step] = new OutputSink(node, outputs[step].length);
+            }
+
+            var conditionalNode = node instanceof ConditionalNode conditional && conditional.isConditional() ? conditional : null;
+            var nodeInputs = stepInputs[step];
+            var dependency = -1;
+            for (; nextInputs[step] < slots.length; nextInputs[step]++) {
+                var j = nextInputs[step];
+                if (slots[j] == -1) {
+                    // Connected to a node that can't be resolved
+                    if (!graph.getConnections(inputs[step][j]).isEmpty())
+                        throw new EvaluationFailure(EvaluationError.Type.UNRESOLVABLE_NODES.error(order.length, graph.getNodes().size()));
+                    continue;
+                }
+                if (conditionalNode != null && conditionalNode.isConditionalInput(j)) continue;
+                if (!evaluated[slotProducers[slots[j]]]) {
+                    dependency = slotProducers[slots[j]];
+                    break;
+                }
+                nodeInputs[j] = values[slots[j]];
+            }
+            if (dependency == -1 && conditionalNode != null) {
+                if (neededInputs[step] == null) {
+                    var needed = new boolean[slots.length];
+                    for (int j = 0; j < slots.length; j++) {
+                        needed[j] = slots[j] != -1 && conditionalNode.isConditionalInput(j) && isInputNeeded(conditionalNode, j, nodeInputs, null);
+                    }
+                    neededInputs[step] = needed;
+                }
+                for (int j = 0; j < slots.length; j++) {
+                    if (neededInputs[step][j] && !evaluated[slotProducers[slots[j]]]) {
+                        dependency = slotProducers[slots[j]];
+                        break;
+                    }
+                }
+            }
+            if (dependency != -1) {
+                stack.push(dependency);
+                continue;
+            }
+
+            if (conditionalNode != null) {
+                // Needed inputs are only filled in afterwards, so that they can't affect whether other inputs are needed
+                for (int j = 0; j < slots.length; j++) {
+                    if (neededInputs[step][j])
+                        nodeInputs[j] = values[slots[j]];
+                }
+            }
+            // Other steps are only evaluated for their connected outputs, but the target may not be connected at all
+            var results = process(node, nodeInputs, context, outputs[step], step == target ? null : usedOutputs[step], sinks[step]);
+            System.arraycopy(results, 0, values, outputSlots[step], results.length);
+            evaluated[step] = true;
+            stack.popInt();
+        }
+    }
+
+    /**
+     * Evaluates the graph this plan was made from using bytecode generated by the {@link GraphCompiler}. Falls back to {@link #evaluate(Context) normal evaluation} if the graph can't be compiled.
+     */
+    public List<EvaluationError> evaluateCompiled(Context context) {
+        var compiled = getCompiled();
+        if (compiled == null)
+            return evaluate(context);
+        return compiled.evaluate(context);
+    }
+
+    /**
+     * Returns the compiled form of this plan, compiling it on first use.
+     * @return The compiled graph, or null if the graph couldn't be compiled.
+     */
+    @Nullable
+    public CompiledGraph getCompiled() {
+        var compiled = this.compiled;
+        if (compiled == null && !compilationFailed) {
+            compiled = GraphCompiler.compile(this);
+            this.compiled = compiled;
+            compilationFailed = compiled == null;
+        }
+        return compiled;
+    }
+
+    /**
+     * Evaluates the graph this plan was made from using a {@link RegisterProgram}. Falls back to {@link #evaluate(Context) normal evaluation} if the graph can't be assembled.
+     */
+    public List<EvaluationError> evaluateProgram(Context context) {
+        var program = getProgram();
+        if (program == null)
+            return evaluate(context);
+        return program.evaluate(context);
+    }
+
+    /**
+     * Returns the register program for this plan, assembling it on first use.
+     * @return The program, or null if the plan couldn't be assembled.
+     */
+    @Nullable
+    public RegisterProgram getProgram() {
+        var program = this.program;
+        if (program == null && !assemblyFailed) {
+            program = RegisterProgram.assemble(this);
+            this.program = program;
+            assemblyFailed = program == null;
+        }
+        return program;
+    }
+
+    /**
+     * Evaluates the graph this plan was made from using the current {@link ExecutionTier tier} of the plan, promoting it when it has been evaluated often enough.
+     * See {@link Graph#evaluateTiered(Context)}.
+     */
+    public List<EvaluationError> evaluateTiered(Context context) {
+        lastUsed = System.nanoTime();
+        lastUsedTick = TieredExecution.getInstance().getTick();
+        if (tier != ExecutionTier.COMPILED && shouldPromote(tieredEvaluations.incrementAndGet()))
+            promote();
+
+        var tier = this.tier;
+        if (tier == ExecutionTier.COMPILED) {
+            var compiled = this.compiled;
+            if (compiled != null)
+                return compiled.evaluate(context);
+        }
+        var program = this.program;
+        if (tier != ExecutionTier.INTERPRETED && program != null)
+            return program.evaluate(context);
+        return evaluate(context);
+    }
+
+    /**
+     * Returns the tier this plan is evaluated with by {@link #evaluateTiered(Context)}.
+     */
+    public ExecutionTier getTier() {
+        return tier;
+    }
+
+    private boolean shouldPromote(int evaluations) {
+        var tiers = TieredExecution.getInstance();
+        var compile = evaluations >= tiers.getCompileThreshold() && !compilationFailed && tiers.getMaxCompiled() > 0;
+        return tier == ExecutionTier.INTERPRETED ? compile || evaluations >= tiers.getProgramThreshold() && !assemblyFailed : compile;
+    }
+
+    private synchronized void promote() {
+        var tiers = TieredExecution.getInstance();
+        var evaluations = tieredEvaluations.get();
+        if (tier == ExecutionTier.INTERPRETED && evaluations >= tiers.getProgramThreshold() && getProgram() != null) {
+            tier = ExecutionTier.PROGRAM;
+            tiers.track(this);
+        }
+        if (tier != ExecutionTier.COMPILED && evaluations >= tiers.getCompileThreshold() && tiers.getMaxCompiled() > 0 && getCompiled() != null) {
+            // Set first, so that being demoted while being admitted isn't overwritten
+            tier = ExecutionTier.COMPILED;
+            tiers.admit(this);
+        }
+    }
+
+    /**
+     * Releases the compiled graph and goes back to the program, which has to be promoted again.
+     * Not synchronized, as it's called while {@link TieredExecution} holds its lock.
+     */
+    void demote() {
+        compiled = null;
+        tier = program != null ? ExecutionTier.PROGRAM : ExecutionTier.INTERPRETED;
+        tieredEvaluations.set(0);
+    }
+
+    /**
+     * Releases both the compiled graph and the program and goes back to interpreting, once the plan has gone cold.
+     * Not synchronized for the same reason as {@link #demote()}.
+     */
+    void reset() {
+        compiled = null;
+        program = null;
+        tier = ExecutionTier.INTERPRETED;
+        tieredEvaluations.set(0);
+    }
+
+    /**
+     * Releases resources held for tiered evaluation. Called by the graph when the plan is discarded or released.
+     */
+    public void discard() {
+        if (tier != ExecutionTier.INTERPRETED)
+            TieredExecution.getInstance().release(this);
+    }
+
+    /**
+     * Checks for errors that prevent evaluation from starting.
+     */
+    @Nullable
+    EvaluationError validate() {
+        return validate(EvaluationMode.FULL);
+    }
+
+    @Nullable
+    EvaluationError validate(EvaluationMode mode) {
+        var verdict = verdicts.get(mode.ordinal());
+        if (verdict != null)
+            return verdict.error;
+
+        var error = computeValidation(mode);
+        verdicts.set(mode.ordinal(), new Verdict(error));
+        return error;
+    }
+
+    @Nullable
+    private EvaluationError computeValidation(EvaluationMode mode) {
+        var liveOnly = mode == EvaluationMode.LIVE;
+        if (!(liveOnly ? liveFullyConnected : fullyConnected))
+            return EvaluationError.Type.NOT_CONNECTED.error();
+
+        if (liveOnly) {
+            for (int i = 0; i < order.length; i++) {
+                if (!live[i]) continue;
+                var error = validateConfig(order[i]);
+                if (error != null)
+                    return error;
+            }
+        } else {
+            for (Node node : graph.getNodes()) {
+                var error = validateConfig(node);
+                if (error != null)
+                    return error;
+            }
+        }
+
+        if (liveOnly ? liveMismatchedConnections : mismatchedConnections)
+            return EvaluationError.Type.MISMATCHED_CONNECTION_TYPES.error();
+        return null;
+    }
+
+    @Nullable
+    private static EvaluationError validateConfig(Node node) {
+        var errors = node.validate();
+        if (!errors.isEmpty())
+            return EvaluationError.Type.INVALID_CONFIG.error(errors.get(0).copy().formatted(Formatting.YELLOW));
+        return null;
+    }
+
+    private record Verdict(@Nullable EvaluationError error) {
+    }
+
+    /**
+     * Checks that every node was part of the evaluation, after the fact.
+     */
+    List<EvaluationError> checkResolved() {
+        return checkResolved(EvaluationMode.FULL);
+    }
+
+    List<EvaluationError> checkResolved(EvaluationMode mode) {
+        var nodeCount = graph.getNodes().size();
+        if (order.length == nodeCount)
+            return List.of();
+        // In live mode only unresolved nodes with side effects matter, anything else wouldn't have been evaluated anyway
+        if (mode == EvaluationMode.LIVE && graph.getNodes().stream().noneMatch(node -> node.type.sideEffects() && !stepIndices.containsKey(node)))
+            return List.of();
+        return List.of(EvaluationError.Type.UNRESOLVABLE_NODES.error(order.length, nodeCount));
+    }
+
+    private EvaluationSession acquireSession() {
+        var session = idleSession.getAndSet(null);
+        // Only happens on the first evaluation or when the plan is evaluated concurrently or recursively
+        if (session == null)
+            session = new EvaluationSession(this);
+        return session;
+    }
+
+    private void run(EvaluationSession session, Context context, EvaluationMode mode) {
+        var liveOnly = mode == EvaluationMode.LIVE;
+        for (int i = 0; i < order.length; i++) {
+            if (merged[i] || folded[i] || guarded[i] || liveOnly && !live[i]) continue;
+            runAnyStep(session, context, i, null);
+        }
+    }
+
+    /**
+     * Runs a step that isn't merged or folded, along with the guarded steps of conditional steps.
+     * @param state The state of an incremental evaluation, or null for normal evaluation. Steps whose inputs haven't changed are skipped in incremental evaluation.
+     */
+    private void runAnyStep(EvaluationSession session, Context context, int step, @Nullable IncrementalState state) {
+        if (guardedSteps[step] != null)
+            runConditional(session, context, step, state);
+        else if (state == null)
+            runStep(session, context, step, null);
+        else if (!state.evaluated[step] || alwaysEvaluated[step] || anyChanged(state.changedSlots, inputSlots[step]))
+            runStep(session, context, step, state);
+        if (state != null)
+            state.evaluated[step] = true;
+    }
+
+    /**
+     * Runs a conditional step, first running the steps that only feed its needed conditional inputs.
+     */
+    private void runConditional(EvaluationSession session, Context context, int step, @Nullable IncrementalState state) {
+        var node = order[step];
+        var conditionalNode = (ConditionalNode) node;
+        checkContexts(node, context);
+
+        var primitive = primitiveNodes[step] != null;
+        var frame = session.frame;
+        var nodeInputs = session.inputs[step];
+        var slots = inputSlots[step];
+        for (int j = 0; j < slots.length; j++) {
+            nodeInputs[j] = slots[j] == -1 || primitive || conditionalNode.isConditionalInput(j) ? null : session.values[slots[j]];
+        }
+        var needed = session.neededInputs[step];
+        for (int j = 0; j < slots.length; j++) {
+            if (primitive) {
+                // Running other steps changes the frame, so it has to be reset before every check
+                frame.inputSlots = slots;
+                frame.outputSlot = outputSlots[step];
+            }
+            needed[j] = slots[j] != -1 && conditionalNode.isConditionalInput(j) && isInputNeeded(conditionalNode, j, nodeInputs, primitive ? frame : null);
+            if (!needed[j]) {
+                // The outputs of skipped steps go stale, so they have to run again once they are needed
+                if (state != null)
+                    forgetGuarded(state, step, j);
+                continue;
+            }
+            for (var guardedStep : guardedSteps[step][j]) {
+                runAnyStep(session, context, guardedStep, state);
+            }
+        }
+        if (state != null) {
+            var previousNeeded = state.previousNeeded[step];
+            if (state.evaluated[step] && !alwaysEvaluated[step] && Arrays.equals(needed, previousNeeded) && !anyChanged(state.changedSlots, slots))
+                return;
+            System.arraycopy(needed, 0, previousNeeded, 0, needed.length);
+        }
+        if (primitive) {
+            runStep(session, context, step, state);
+            return;
+        }
+        // Needed inputs are only filled in afterwards, so that they can't affect whether other inputs are needed
+        for (int j = 0; j < slots.length; j++) {
+            if (needed[j])
+                nodeInputs[j] = session.values[slots[j]];
+        }
+        processGeneric(session, context, step, state);
+    }
+
+    /**
+     * Marks the steps that only feed a conditional input as not evaluated, including the steps guarded by nested conditional steps.
+     */
+    private void forgetGuarded(IncrementalState state, int step, int input) {
+        for (var guardedStep : guardedSteps[step][input]) {
+            state.evaluated[guardedStep] = false;
+            if (guardedSteps[guardedStep] == null) continue;
+            for (int j = 0; j < guardedSteps[guardedStep].length; j++) {
+                forgetGuarded(state, guardedStep, j);
+            }
+        }
+    }
+
+    static boolean isInputNeeded(ConditionalNode node, int input, DataValue<?>[] inputs, @Nullable PrimitiveFrame frame) {
+        try {
+            // Only primitive conditional nodes are evaluated on primitive lanes, see create
+            return frame != null ? ((PrimitiveConditionalNode) node).isInputNeeded(input, frame) : node.isInputNeeded(input, inputs);
+        } catch (RuntimeException e) {
+            NodeFlow.LOGGER.warn("Unexpected error while evaluating node", e);
+            throw new EvaluationFailure(EvaluationError.Type.EVALUATION_ERROR.error(e.getMessage()));
+        }
+    }
+
+    private void runParallel(EvaluationSession session, Context context, ForkJoinPool pool) {
+        for (int wave = 0; wave < waveStarts.length; wave++) {
+            var start = waveStarts[wave];
+            var end = wave + 1 < waveStarts.length ? waveStarts[wave + 1] : order.length;
+            var parallelCount = 0;
+            for (int i = start; i < end; i++) {
+                if (parallelSteps[i])
+                    parallelCount++;
+            }
+
+            if (parallelCount < PARALLEL_WAVE_THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    if (merged[i] || folded[i] || guarded[i]) continue;
+                    runAnyStep(session, context, i, null);
+                }
+                continue;
+            }
+
+            var tasks = new ForkJoinTask<?>[end - start];
+            var failures = new EvaluationFailure[end - start];
+            for (int i = start; i < end; i++) {
+                if (!parallelSteps[i]) continue;
+                var step = i;
+                tasks[i - start] = pool.submit(() -> {
+                    try {
+                        runStep(session, context, step, null);
+                    } catch (EvaluationFailure failure) {
+                        failures[step - start] = failure;
+                    }
+                });
+            }
+            for (var task : tasks) {
+                if (task != null)
+                    task.join();
+            }
+
+            // The remaining steps run on this thread in order. Like in normal evaluation, nothing after the first failure runs
+            for (int i = start; i < end; i++) {
+                if (failures[i - start] != null)
+                    throw failures[i - start];
+                if (parallelSteps[i] || merged[i] || folded[i] || guarded[i]) continue;
+                runAnyStep(session, context, i, null);
+            }
+        }
+    }
+
+    private void runBatch(BatchSession session, List<Context> contexts, EvaluationError[] errors) {
+        session.frame.length = contexts.size();
+        for (int i = 0; i < order.length; i++) {
+            if (merged[i] || folded[i] || guarded[i]) continue;
+            runBatchStep(session, contexts, errors, i, null);
+        }
+    }
+
+    /**
+     * Runs a step of a batch evaluation, along with the guarded steps of conditional steps.
+     * @param columns The columns of the contexts the step runs for, or null if it runs for all of them. Each context stops at its first error, just like a normal evaluation.
+     */
+    private void runBatchStep(BatchSession session, List<Context> contexts, EvaluationError[] errors, int step, @Nullable boolean[] columns) {
+        if (guardedSteps[step] != null)
+            runBatchConditional(session, contexts, errors, step, columns);
+        else if (primitiveNodes[step] != null)
+            runColumns(session, contexts, errors, step, columns);
+        else
+            runBatchGeneric(session, contexts, errors, step, columns, null);
+    }
+
+    /**
+     * Runs a conditional step of a batch evaluation. The steps that only feed a conditional input only run for the contexts that need the input.
+     */
+    private void runBatchConditional(BatchSession session, List<Context> contexts, EvaluationError[] errors, int step, @Nullable boolean[] columns) {
+        var node = order[step];
+        var conditionalNode = (ConditionalNode) node;
+        var size = contexts.size();
+        for (int column = 0; column < size; column++) {
+            if (errors[column] != null || columns != null && !columns[column]) continue;
+            try {
+                checkContexts(node, contexts.get(column));
+            } catch (EvaluationFailure failure) {
+                errors[column] = failure.error;
+            }
+        }
+
+        var primitive = primitiveNodes[step] != null;
+        var frame = session.frame;
+        var nodeInputs = session.inputs[step];
+        var slots = inputSlots[step];
+        var needed = session.neededInputs[step];
+        for (int j = 0; j < slots.length; j++) {
+            Arrays.fill(needed[j], false);
+            if (slots[j] == -1 || !conditionalNode.isConditionalInput(j)) continue;
+            for (int column = 0; column < size; column++) {
+                if (errors[column] != null || columns != null && !columns[column]) continue;
+                try {
+                    if (primitive) {
+                        // Running other steps changes the frame, so it has to be reset before every check
+                        frame.inputSlots = slots;
+                        frame.outputSlot = outputSlots[step];
+                        needed[j][column] = isInputNeeded(conditionalNode, j, nodeInputs, frame.loadRow(column));
+                    } else {
+                        for (int k = 0; k < slots.length; k++) {
+                            nodeInputs[k] = slots[k] == -1 || conditionalNode.isConditionalInput(k) ? null : session.values[slots[k]][column];
+                        }
+                        needed[j][column] = isInputNeeded(conditionalNode, j, nodeInputs, null);
+                    }
+                } catch (EvaluationFailure failure) {
+                    errors[column] = failure.error;
+                }
+            }
+            for (var guardedStep : guardedSteps[step][j]) {
+                runBatchStep(session, contexts, errors, guardedStep, needed[j]);
+            }
+        }
+
+        if (primitive)
+            runColumns(session, contexts, errors, step, columns);
+        else
+            runBatchGeneric(session, contexts, errors, step, columns, needed);
+    }
+
+    /**
+     * Runs a generic step of a batch evaluation one context at a time.
+     * @param needed For conditional steps, which conditional inputs each context needs. Inputs that aren't needed are null when the node is processed.
+     */
+    private void runBatchGeneric(BatchSession session, List<Context> contexts, EvaluationError[] errors, int step, @Nullable boolean[] columns, @Nullable boolean[][] needed) {
+        var node = order[step];
+        var conditionalNode = needed != null ? (ConditionalNode) node : null;
+        var nodeInputs = session.inputs[step];
+        var slots = inputSlots[step];
+        for (int column = 0; column < contexts.size(); column++) {
+            if (errors[column] != null || columns != null && !columns[column]) continue;
+            var context = contexts.get(column);
+            try {
+                checkContexts(node, context);
+                for (int j = 0; j < slots.length; j++) {
+                    var skipped = conditionalNode != null && conditionalNode.isConditionalInput(j) && !needed[j][column];
+                    nodeInputs[j] = slots[j] == -1 || skipped ? null : session.values[slots[j]][column];
+                }
+                var results = process(node, nodeInputs, context, outputs[step], usedOutputs[step], session.sinks[step]);
+                for (int j = 0; j < results.length; j++) {
+                    var slot = outputSlots[step] + j;
+                    session.values[slot][column] = results[j];
+                    if (unboxedSlots[slot])
+                        unbox(session.frame, slot, column, results[j]);
+                }
+            } catch (EvaluationFailure failure) {
+                errors[column] = failure.error;
+            }
+        }
+    }
+
+    /**
+     * Runs a primitive step for all contexts of a batch at once, using a {@link ColumnKernel} if one is registered.
+     */
+    private void runColumns(BatchSession session, List<Context> contexts, EvaluationError[] errors, int step, @Nullable boolean[] columns) {
+        var node = order[step];
+        var size = contexts.size();
+        if (!node.contexts.isEmpty()) {
+            for (int column = 0; column < size; column++) {
+                if (errors[column] != null || columns != null && !columns[column]) continue;
+                try {
+                    checkContexts(node, contexts.get(column));
+                } catch (EvaluationFailure failure) {
+                    errors[column] = failure.error;
+                }
+            }
+        }
+
+        // Columns of contexts that already failed or don't run the step are processed too, but their results are never used
+        var frame = session.frame;
+        frame.inputSlots = inputSlots[step];
+        frame.outputSlot = outputSlots[step];
+        frame.outputCount = outputs[step].length;
+        try {
+            var kernel = ColumnKernels.getKernel(primitiveNodes[step]);
+            if (kernel != null)
+                kernel.apply(frame);
+            else
+                primitiveNodes[step].processColumns(frame);
+        } catch (RuntimeException e) {
+            NodeFlow.LOGGER.warn("Unexpected error while evaluating node", e);
+            var error = EvaluationError.Type.EVALUATION_ERROR.error(e.getMessage());
+            for (int column = 0; column < size; column++) {
+                if (errors[column] == null && (columns == null || columns[column]))
+                    errors[column] = error;
+            }
+            return;
+        }
+
+        for (int slot = outputSlots[step], end = slot + outputs[step].length; slot < end; slot++) {
+            if (!boxedSlots[slot]) continue;
+            for (int column = 0; column < size; column++) {
+                session.values[slot][column] = slotLanes[slot] == LANE_NUMBER ? DataType.NUMBER.makeValue(frame.numbers[slot][column]) : frame.booleans[slot][column] ? TRUE : FALSE;
+            }
+        }
+    }
+
+    private void runIncremental(IncrementalState state, Context context) {
+        var changedSlots = state.changedSlots;
+        Arrays.fill(changedSlots, false);
+        for (int i = 0; i < order.length; i++) {
+            if (merged[i] || folded[i] || guarded[i]) continue;
+            runAnyStep(state.session, context, i, state);
+        }
+    }
+
+    private static boolean anyChanged(boolean[] changedSlots, int[] slots) {
+        for (var slot : slots) {
+            if (slot != -1 && changedSlots[slot])
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Runs a single step of the plan.
+     * @param state The state of an incremental evaluation that changed outputs are recorded in, or null for normal evaluation.
+     */
+    private void runStep(EvaluationSession session, Context context, int step, @Nullable IncrementalState state) {
+        var values = session.values;
+        var frame = session.frame;
+        var node = order[step];
+        checkContexts(node, context);
+
+        var primitiveNode = primitiveNodes[step];
+        if (primitiveNode != null) {
+            frame.inputSlots = inputSlots[step];
+            frame.outputSlot = outputSlots[step];
+            try {
+                primitiveNode.processPrimitive(frame);
+            } catch (RuntimeException e) {
+                NodeFlow.LOGGER.warn("Unexpected error while evaluating node", e);
+                throw new EvaluationFailure(EvaluationError.Type.EVALUATION_ERROR.error(e.getMessage()));
+            }
+            for (int slot = outputSlots[step], end = slot + outputs[step].length; slot < end; slot++) {
+                if (state != null && !state.updateLane(frame, slot, step))
+                    continue;
+                if (boxedSlots[slot])
+                    values[slot] = box(frame, slot);
+            }
+            return;
+        }
+
+        var nodeInputs = session.inputs[step];
+        var slots = inputSlots[step];
+        for (int j = 0; j < slots.length; j++) {
+            nodeInputs[j] = slots[j] == -1 ? null : values[slots[j]];
+        }
+        processGeneric(session, context, step, state);
+    }
+
+    /**
+     * Processes a step with the inputs that were placed in the session and stores its outputs.
+     */
+    private void processGeneric(EvaluationSession session, Context context, int step, @Nullable IncrementalState state) {
+        var values = session.values;
+        var results = process(order[step], session.inputs[step], context, outputs[step], usedOutputs[step], session.sinks[step]);
+        for (int j = 0; j < results.length; j++) {
+            // Unused outputs may be missing
+            if (results[j] == null) continue;
+            var slot = outputSlots[step] + j;
+            if (state != null && !state.updateValue(values, slot, step, results[j]))
+                continue;
+            values[slot] = results[j];
+            if (unboxedSlots[slot])
+                unbox(session.frame, slot, results[j]);
+        }
+    }
+
+    /**
+     * Makes sure that all contexts a node requires are available.
+     * @throws EvaluationFailure If a context is missing.
+     */
+    static void checkContexts(Node node, Context context) {
+        for (var type : node.contexts) {
+            if (!context.contains(type))
+                throw new EvaluationFailure(EvaluationError.Type.MISSING_CONTEXTS.error(node.contexts.stream().filter(Predicate.not(context::contains)).toList()));
+        }
+    }
+
+    /**
+     * Processes a node into a sink using {@link Node#process} and checks its results against the expected outputs. Outputs that aren't in the mask may be skipped by the node.
+     * @throws EvaluationFailure If the node fails or returns invalid results.
+     * @return The outputs of the node, which belong to the sink and have to be copied before it's used again.
+     */
+    static DataValue<?>[] process(Node node, DataValue<?>[] inputs, Context context, Connector<?>[] expectedOutputs, @Nullable BitSet usedOutputs, OutputSink sink) {
+        sink.begin(context, usedOutputs);
+        boolean success;
+        try {
+            success = node.process(inputs, sink);
+        } catch (RuntimeException e) {
+            NodeFlow.LOGGER.warn("Unexpected error while evaluating node", e);
+            throw new EvaluationFailure(EvaluationError.Type.EVALUATION_ERROR.error(e.getMessage()));
+        }
+
+        // Propagate node errors
+        if (!success)
+            throw new EvaluationFailure(sink.error != null ? sink.error : EvaluationError.Type.EVALUATION_ERROR.error(Text.empty()));
+
+        var results = sink.values;
+        for (int i = 0; i < expectedOutputs.length; i++) {
+            var connector = expectedOutputs[i];
+            var value = results[i];
+
+            if (value == null) {
+                if (usedOutputs == null || usedOutputs.get(i))
+                    throw new EvaluationFailure(EvaluationError.Type.UNEXPECTED_OUTPUT_TYPE.error(i, "null", connector.type()));
+                continue;
+            }
+            if (value.type() != connector.type()) {
+                throw new EvaluationFailure(EvaluationError.Type.UNEXPECTED_OUTPUT_TYPE.error(i, value.type(), connector.type()));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Creates a sink for each step, except the ones that never run.
+     */
+    OutputSink[] createSinks() {
+        var sinks = new OutputSink[order.length];
+        for (int i = 0; i < order.length; i++) {
+            if (merged[i] || folded[i]) continue;
+            sinks[i] = new OutputSink(order[i], outputs[i].length);
+        }
+        return sinks;
+    }
+
+    private DataValue<?> box(PrimitiveFrame frame, int slot) {
+        if (slotLanes[slot] == LANE_NUMBER)
+            return DataType.NUMBER.makeValue(frame.numbers[slot]);
+        return frame.booleans[slot] ? TRUE : FALSE;
+    }
+
+    private void unbox(PrimitiveFrame frame, int slot, DataValue<?> value) {
+        if (slotLanes[slot] == LANE_NUMBER)
+            frame.numbers[slot] = value.getAs(DataType.NUMBER);
+        else
+            frame.booleans[slot] = value.getAs(DataType.BOOLEAN);
+    }
+
+    private record MergeKey(NodeType<?> type, NbtCompound config, IntList inputSlots) {
+    }
+
+    private void unbox(ColumnFrame frame, int slot, int column, DataValue<?> value) {
+        if (slotLanes[slot] == LANE_NUMBER)
+            frame.numbers[slot][column] = value.getAs(DataType.NUMBER);
+        else
+            frame.booleans[slot][column] = value.getAs(DataType.BOOLEAN);
+    }
+
+    /**
+     * The values remembered between incremental evaluations, along with which steps have valid outputs and which slots changed during the current evaluation.
+     */
+    private static final class IncrementalState {
+        final EvaluationSession session;
+        final boolean[] evaluated;
+        final boolean[] changedSlots;
+        // For conditional steps, which inputs were needed when the step last ran
+        final boolean[][] previousNeeded;
+        // The lanes of the frame are overwritten in place, so their previous values are kept separately
+        final double[] previousNumbers;
+        final boolean[] previousBooleans;
+
+        IncrementalState(ExecutionPlan plan) {
+            session = new EvaluationSession(plan);
+            evaluated = new boolean[plan.order.length];
+            changedSlots = new boolean[plan.slotCount];
+            previousNeeded = new boolean[plan.order.length][];
+            for (int i = 0; i < previousNeeded.length; i++) {
+                if (plan.guardedSteps[i] != null)
+                    previousNeeded[i] = new boolean[plan.inputs[i].length];
+            }
+            previousNumbers = new double[plan.slotCount];
+            previousBooleans = new boolean[plan.slotCount];
+        }
+
+        /**
+         * Records whether a slot written by a primitive node changed.
+         * @return Whether the slot changed.
+         */
+        boolean updateLane(PrimitiveFrame frame, int slot, int step) {
+            var changed = !evaluated[step]
+                    || Double.doubleToLongBits(frame.numbers[slot]) != Double.doubleToLongBits(previousNumbers[slot])
+                    || frame.booleans[slot] != previousBooleans[slot];
+            previousNumbers[slot] = frame.numbers[slot];
+            previousBooleans[slot] = frame.booleans[slot];
+            changedSlots[slot] = changed;
+            return changed;
+        }
+
+        /**
+         * Records whether a slot written by a generic node changed.
+         * @return Whether the slot changed.
+         */
+        boolean updateValue(DataValue<?>[] values, int slot, int step, DataValue<?> value) {
+            var changed = !evaluated[step] || !value.equals(values[slot]);
+            changedSlots[slot] = changed;
+            return changed;
+        }
+    }
+
+    /**
+     * Reusable buffers for batch evaluation. Each slot has a column with one value for each context.
+     * Number and boolean slots additionally have columns in the {@link #frame}.
+     */
+    private static final class BatchSession {
+        final int capacity;
+        final DataValue<?>[][] values;
+        final DataValue<?>[][] inputs;
+        // For conditional steps, which inputs each context needs
+        final boolean[][][] neededInputs;
+        final ColumnFrame frame;
+        final OutputSink[] sinks;
+
+        BatchSession(ExecutionPlan plan, int capacity) {
+            this.capacity = capacity;
+            values = new DataValue<?>[plan.slotCount][capacity];
+            inputs = new DataValue<?>[plan.order.length][];
+            neededInputs = new boolean[plan.order.length][][];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = new DataValue<?>[plan.inputs[i].length];
+                if (plan.guardedSteps[i] != null)
+                    neededInputs[i] = new boolean[plan.inputs[i].length][capacity];
+            }
+            sinks = plan.createSinks();
+            frame = new ColumnFrame(plan.slotLanes, capacity);
+
+            for (int slot = 0; slot < values.length; slot++) {
+                var value = plan.foldedValues[slot];
+                if (value == null) continue;
+                Arrays.fill(values[slot], value);
+                if (plan.slotLanes[slot] == LANE_NUMBER)
+                    Arrays.fill(frame.numbers[slot], value.getAs(DataType.NUMBER));
+                else if (plan.slotLanes[slot] == LANE_BOOLEAN)
+                    Arrays.fill(frame.booleans[slot], value.getAs(DataType.BOOLEAN));
+            }
+        }
+    }
+
+    /**
+     * Reusable buffers for a single evaluation of a plan. Every output has a slot in {@link #values} and each node gets a preallocated input array.
+     * Number and boolean slots additionally have primitive lanes in the {@link #frame}.
+     */
+    static final class EvaluationSession {
+        final DataValue<?>[] values;
+        final DataValue<?>[][] inputs;
+        final boolean[][] neededInputs;
+        final PrimitiveFrame frame;
+        final OutputSink[] sinks;
+
+        EvaluationSession(ExecutionPlan plan) {
+            values = new DataValue<?>[plan.slotCount];
+            sinks = plan.createSinks();
+            frame = new PrimitiveFrame(plan.slotCount);
+            inputs = new DataValue<?>[plan.order.length][];
+            neededInputs = new boolean[plan.order.length][];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = new DataValue<?>[plan.inputs[i].length];
+                if (plan.guardedSteps[i] != null)
+                    neededInputs[i] = new boolean[plan.inputs[i].length];
+            }
+
+            // Folded values never change, so they only have to be written once
+            for (int slot = 0; slot < values.length; slot++) {
+                var value = plan.foldedValues[slot];
+                if (value == null) continue;
+                values[slot] = value;
+                if (plan.slotLanes[slot] != LANE_NONE)
+                    plan.unbox(frame, slot, value);
+            }
+        }
+    }
+}
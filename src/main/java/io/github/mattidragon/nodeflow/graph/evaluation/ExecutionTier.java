@@ -0,0 +1,20 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+/**
+ * How a graph is evaluated by {@link ExecutionPlan#evaluateTiered(io.github.mattidragon.nodeflow.graph.context.Context) tiered evaluation}.
+ * @see TieredExecution
+ */
+public enum ExecutionTier {
+    /**
+     * Evaluated by the normal interpreter. Graphs start here, as preparing anything else isn't worth it for graphs that rarely run.
+     */
+    INTERPRETED,
+    /**
+     * Evaluated by a {@link RegisterProgram}.
+     */
+    PROGRAM,
+    /**
+     * Evaluated by a {@link CompiledGraph}. The number of graphs in this tier is limited, as each one uses a hidden class.
+     */
+    COMPILED
+}
@@ -0,0 +1,498 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.NodeFlow;
+import io.github.mattidragon.nodeflow.graph.Connector;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.data.DataType;
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Compiles {@link ExecutionPlan execution plans} into hidden classes that evaluate the whole graph in a single method, keeping values in local variables.
+ * Node types with a registered {@link Intrinsic} and nodes with a {@link PrimitiveOp} are inlined as bytecode, while all other nodes are evaluated by calling {@link Node#process}.
+ * Steps that only feed a conditional input are wrapped in a branch, so they only run when the input is needed, just like in the interpreter.
+ */
+public final class GraphCompiler {
+    // Read by compilations on any thread, so registering has to be thread safe
+    private static final Map<NodeType<?>, Intrinsic> INTRINSICS = new ConcurrentHashMap<>();
+
+    private static final String CLASS_NAME = Type.getInternalName(GraphCompiler.class).replace("GraphCompiler", "CompiledGraphImpl");
+    private static final String PRIMITIVE_OP = Type.getInternalName(PrimitiveOp.class);
+    private static final String PLAN = Type.getInternalName(ExecutionPlan.class);
+    private static final String COMPILED_GRAPH = Type.getInternalName(CompiledGraph.class);
+    private static final String NODE = Type.getDescriptor(Node.class);
+    private static final String VALUE = Type.getInternalName(DataValue.class);
+    private static final String VALUES = Type.getDescriptor(DataValue[].class);
+    private static final String CONNECTORS = Type.getDescriptor(Connector[].class);
+    private static final String BIT_SET = Type.getDescriptor(BitSet.class);
+    private static final String SINK = Type.getDescriptor(OutputSink.class);
+    private static final String CONTEXT = Type.getDescriptor(Context.class);
+    private static final String IS_INPUT_NEEDED = Type.getMethodDescriptor(Type.BOOLEAN_TYPE, Type.getType(ConditionalNode.class), Type.INT_TYPE, Type.getType(DataValue[].class), Type.getType(PrimitiveFrame.class));
+
+    private GraphCompiler() {}
+
+    /**
+     * Registers an intrinsic for a node type, replacing any previous one. Takes precedence over the {@link PrimitiveOp} of the node. Intrinsics are only used for nodes that have a single output, only number and boolean connectors and that don't require any context.
+     * Safe to call from any thread, but graphs that are already compiled keep using the previous intrinsic.
+     */
+    public static void registerIntrinsic(NodeType<?> type, Intrinsic intrinsic) {
+        INTRINSICS.put(type, intrinsic);
+    }
+
+    /**
+     * Compiles a plan. Usually you want {@link ExecutionPlan#getCompiled()} instead, which caches the result.
+     * @return The compiled graph, or null if the graph can't be compiled.
+     */
+    @Nullable
+    public static CompiledGraph compile(ExecutionPlan plan) {
+        // Such plans never run, so there is no point in compiling them
+        if (plan.mismatchedConnections)
+            return null;
+
+        try {
+            var bytes = new Generator(plan).generate();
+            var lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+            var constructor = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class, Node[].class, Connector[][].class, DataValue[].class, BitSet[].class, OutputSink[].class));
+            return new CompiledGraph(plan, constructor);
+        } catch (RuntimeException | ReflectiveOperationException | LinkageError e) {
+            // Large graphs can exceed the method size limit, so this is expected to happen sometimes
+            NodeFlow.LOGGER.debug("Failed to compile graph, falling back to interpreter", e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Intrinsic getIntrinsic(ExecutionPlan plan, int step) {
+        var node = plan.order[step];
+        var intrinsic = INTRINSICS.get(node.type);
+        if (intrinsic == null && node instanceof PrimitiveNode primitiveNode && primitiveNode.getOp() != null)
+            intrinsic = Intrinsic.operation(primitiveNode.getOp());
+        if (intrinsic == null || !node.contexts.isEmpty() || plan.outputs[step].length != 1)
+            return null;
+        for (var input : plan.inputs[step]) {
+            if (ExecutionPlan.laneOf(input) == ExecutionPlan.LANE_NONE)
+                return null;
+        }
+        for (var slot : plan.inputSlots[step]) {
+            if (slot == -1)
+                return null;
+        }
+        if (plan.slotLanes[plan.outputSlots[step]] == ExecutionPlan.LANE_NONE)
+            return null;
+        return intrinsic;
+    }
+
+    private static void pushInt(MethodVisitor method, int value) {
+        if (value >= -1 && value <= 5) {
+            method.visitInsn(ICONST_0 + value);
+        } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+            method.visitIntInsn(BIPUSH, value);
+        } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+            method.visitIntInsn(SIPUSH, value);
+        } else {
+            method.visitLdcInsn(value);
+        }
+    }
+
+    /**
+     * Emits the bytecode for a node type. Inputs are on the operand stack in order, numbers as doubles and booleans as ints. The intrinsic has to replace them with the single output, in the same representation.
+     */
+    @FunctionalInterface
+    public interface Intrinsic {
+        void emit(MethodVisitor method);
+
+        /**
+         * Emits bytecode before the inputs are loaded, for example the receiver of a method call. Whatever it pushes has to be consumed by {@link #emit}.
+         */
+        default void emitBeforeInputs(MethodVisitor method) {
+        }
+
+        static Intrinsic constant(double value) {
+            return method -> method.visitLdcInsn(value);
+        }
+
+        static Intrinsic constant(boolean value) {
+            return method -> method.visitInsn(value ? ICONST_1 : ICONST_0);
+        }
+
+        /**
+         * Applies an op by calling the method of its shape on the enum constant, which the jit inlines as the constant has a known class.
+         */
+        static Intrinsic operation(PrimitiveOp op) {
+            var shape = op.getShape();
+            return new Intrinsic() {
+                @Override
+                public void emitBeforeInputs(MethodVisitor method) {
+                    method.visitFieldInsn(GETSTATIC, PRIMITIVE_OP, op.name(), "L" + PRIMITIVE_OP + ";");
+                }
+
+                @Override
+                public void emit(MethodVisitor method) {
+                    method.visitMethodInsn(INVOKEVIRTUAL, PRIMITIVE_OP, shape.methodName, shape.methodDescriptor, false);
+                }
+            };
+        }
+    }
+
+    private static class Generator {
+        private final ExecutionPlan plan;
+        private final Intrinsic[] intrinsics;
+        // Local variables of each slot, or -1 if the slot doesn't need one
+        private final int[] primitiveLocals;
+        private final int[] objectLocals;
+        private int nextLocal = 2;
+
+        private Generator(ExecutionPlan plan) {
+            this.plan = plan;
+            this.intrinsics = new Intrinsic[plan.order.length];
+            this.primitiveLocals = new int[plan.slotCount];
+            this.objectLocals = new int[plan.slotCount];
+            Arrays.fill(primitiveLocals, -1);
+            Arrays.fill(objectLocals, -1);
+        }
+
+        private byte[] generate() {
+            allocateLocals();
+
+            var writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES) {
+                @Override
+                protected String getCommonSuperClass(String type1, String type2) {
+                    // Every local has a single type, so this is only a fallback. Avoids loading classes through the wrong class loader.
+                    return "java/lang/Object";
+                }
+            };
+            writer.visit(V17, ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, CLASS_NAME, null, "java/lang/Object", new String[]{ Type.getInternalName(CompiledGraph.Body.class) });
+
+            writer.visitField(ACC_PRIVATE | ACC_FINAL, "foldedValues", VALUES, null, null).visitEnd();
+            for (int i = 0; i < plan.order.length; i++) {
+                if (intrinsics[i] != null || plan.merged[i] || plan.folded[i]) continue;
+                writer.visitField(ACC_PRIVATE | ACC_FINAL, "node" + i, NODE, null, null).visitEnd();
+                writer.visitField(ACC_PRIVATE | ACC_FINAL, "inputs" + i, VALUES, null, null).visitEnd();
+                writer.visitField(ACC_PRIVATE | ACC_FINAL, "outputs" + i, CONNECTORS, null, null).visitEnd();
+                writer.visitField(ACC_PRIVATE | ACC_FINAL, "usedOutputs" + i, BIT_SET, null, null).visitEnd();
+                writer.visitField(ACC_PRIVATE | ACC_FINAL, "sink" + i, SINK, null, null).visitEnd();
+            }
+
+            generateConstructor(writer);
+            generateRun(writer);
+
+            writer.visitEnd();
+            return writer.toByteArray();
+        }
+
+        private void allocateLocals() {
+            for (int i = 0; i < plan.order.length; i++) {
+                if (plan.merged[i]) continue;
+                // Folded steps only load constants, which works the same as for other nodes. Conditional steps have to decide which inputs are needed, unless nothing depends on it
+                intrinsics[i] = plan.folded[i] || hasGuardedSteps(i) ? null : getIntrinsic(plan, i);
+                var outputSlot = plan.outputSlots[i];
+                if (intrinsics[i] != null) {
+                    primitiveLocals[outputSlot] = allocate(plan.slotLanes[outputSlot]);
+                } else {
+                    for (int slot = outputSlot; slot < outputSlot + plan.outputs[i].length; slot++) {
+                        objectLocals[slot] = allocate(ExecutionPlan.LANE_NONE);
+                    }
+                }
+            }
+
+            // Values crossing between intrinsics and other nodes get a second local
+            for (int i = 0; i < plan.order.length; i++) {
+                if (plan.merged[i]) continue;
+                for (var slot : plan.inputSlots[i]) {
+                    if (slot == -1) continue;
+                    if (intrinsics[i] != null && primitiveLocals[slot] == -1)
+                        primitiveLocals[slot] = allocate(plan.slotLanes[slot]);
+                    if (intrinsics[i] == null && objectLocals[slot] == -1)
+                        objectLocals[slot] = allocate(ExecutionPlan.LANE_NONE);
+                }
+            }
+        }
+
+        private boolean hasGuardedSteps(int step) {
+            var guardedSteps = plan.guardedSteps[step];
+            return guardedSteps != null && Arrays.stream(guardedSteps).anyMatch(steps -> steps.length > 0);
+        }
+
+        private int allocate(byte lane) {
+            var local = nextLocal;
+            // Doubles take two local slots
+            nextLocal += lane == ExecutionPlan.LANE_NUMBER ? 2 : 1;
+            return local;
+        }
+
+        private void generateConstructor(ClassWriter writer) {
+            var method = writer.visitMethod(ACC_PUBLIC, "<init>", Type.getMethodDescriptor(Type.VOID_TYPE, Type.getType(Node[].class), Type.getType(Connector[][].class), Type.getType(DataValue[].class), Type.getType(BitSet[].class), Type.getType(OutputSink[].class)), null, null);
+            method.visitCode();
+            method.visitVarInsn(ALOAD, 0);
+            method.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+            method.visitVarInsn(ALOAD, 0);
+            method.visitVarInsn(ALOAD, 3);
+            method.visitFieldInsn(PUTFIELD, CLASS_NAME, "foldedValues", VALUES);
+
+            for (int i = 0; i < plan.order.length; i++) {
+                if (intrinsics[i] != null || plan.merged[i] || plan.folded[i]) continue;
+
+                method.visitVarInsn(ALOAD, 0);
+                method.visitVarInsn(ALOAD, 1);
+                pushInt(method, i);
+                method.visitInsn(AALOAD);
+                method.visitFieldInsn(PUTFIELD, CLASS_NAME, "node" + i, NODE);
+
+                method.visitVarInsn(ALOAD, 0);
+                pushInt(method, plan.inputs[i].length);
+                method.visitTypeInsn(ANEWARRAY, VALUE);
+                method.visitFieldInsn(PUTFIELD, CLASS_NAME, "inputs" + i, VALUES);
+
+                method.visitVarInsn(ALOAD, 0);
+                method.visitVarInsn(ALOAD, 2);
+                pushInt(method, i);
+                method.visitInsn(AALOAD);
+                method.visitFieldInsn(PUTFIELD, CLASS_NAME, "outputs" + i, CONNECTORS);
+
+                method.visitVarInsn(ALOAD, 0);
+                method.visitVarInsn(ALOAD, 4);
+                pushInt(method, i);
+                method.visitInsn(AALOAD);
+                method.visitFieldInsn(PUTFIELD, CLASS_NAME, "usedOutputs" + i, BIT_SET);
+
+                method.visitVarInsn(ALOAD, 0);
+                method.visitVarInsn(ALOAD, 5);
+                pushInt(method, i);
+                method.visitInsn(AALOAD);
+                method.visitFieldInsn(PUTFIELD, CLASS_NAME, "sink" + i, SINK);
+            }
+
+            method.visitInsn(RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+
+        private void generateRun(ClassWriter writer) {
+            var method = writer.visitMethod(ACC_PUBLIC, "run", "(" + CONTEXT + ")V", null, null);
+            method.visitCode();
+
+            // Locals of skipped steps are never written, so they need a value before any branches for the verifier
+            if (IntStream.range(0, plan.order.length).anyMatch(this::hasGuardedSteps))
+                generateLocalDefaults(method);
+
+            for (int i = 0; i < plan.order.length; i++) {
+                if (plan.merged[i] || plan.guarded[i]) continue;
+                generateStep(method, i);
+            }
+
+            method.visitInsn(RETURN);
+            method.visitMaxs(0, 0);
+            method.visitEnd();
+        }
+
+        private void generateLocalDefaults(MethodVisitor method) {
+            for (int slot = 0; slot < plan.slotCount; slot++) {
+                if (objectLocals[slot] != -1) {
+                    method.visitInsn(ACONST_NULL);
+                    method.visitVarInsn(ASTORE, objectLocals[slot]);
+                }
+                if (primitiveLocals[slot] != -1) {
+                    method.visitInsn(plan.slotLanes[slot] == ExecutionPlan.LANE_NUMBER ? DCONST_0 : ICONST_0);
+                    storePrimitive(method, slot);
+                }
+            }
+        }
+
+        private void generateStep(MethodVisitor method, int step) {
+            if (plan.folded[step]) {
+                generateFolded(method, step);
+            } else if (intrinsics[step] != null) {
+                generateIntrinsic(method, step);
+            } else if (plan.guardedSteps[step] != null) {
+                generateConditional(method, step);
+            } else {
+                generateProcess(method, step);
+            }
+        }
+
+        private void generateFolded(MethodVisitor method, int step) {
+            var outputSlot = plan.outputSlots[step];
+            for (int slot = outputSlot; slot < outputSlot + plan.outputs[step].length; slot++) {
+                method.visitVarInsn(ALOAD, 0);
+                method.visitFieldInsn(GETFIELD, CLASS_NAME, "foldedValues", VALUES);
+                pushInt(method, slot);
+                method.visitInsn(AALOAD);
+                method.visitVarInsn(ASTORE, objectLocals[slot]);
+                if (primitiveLocals[slot] != -1) {
+                    var value = plan.foldedValues[slot];
+                    if (plan.slotLanes[slot] == ExecutionPlan.LANE_NUMBER) {
+                        method.visitLdcInsn(value.getAs(DataType.NUMBER));
+                    } else {
+                        method.visitInsn(value.getAs(DataType.BOOLEAN) ? ICONST_1 : ICONST_0);
+                    }
+                    storePrimitive(method, slot);
+                }
+            }
+        }
+
+        private void generateIntrinsic(MethodVisitor method, int step) {
+            intrinsics[step].emitBeforeInputs(method);
+            for (var slot : plan.inputSlots[step]) {
+                loadPrimitive(method, slot);
+            }
+            intrinsics[step].emit(method);
+
+            var slot = plan.outputSlots[step];
+            storePrimitive(method, slot);
+            if (objectLocals[slot] != -1) {
+                loadPrimitive(method, slot);
+                if (plan.slotLanes[slot] == ExecutionPlan.LANE_NUMBER) {
+                    method.visitMethodInsn(INVOKESTATIC, COMPILED_GRAPH, "boxNumber", "(D)L" + VALUE + ";", false);
+                } else {
+                    method.visitMethodInsn(INVOKESTATIC, COMPILED_GRAPH, "boxBoolean", "(Z)L" + VALUE + ";", false);
+                }
+                method.visitVarInsn(ASTORE, objectLocals[slot]);
+            }
+        }
+
+        private void generateProcess(MethodVisitor method, int step) {
+            generateCheckContexts(method, step);
+            generateInputs(method, step, null);
+            generateCall(method, step);
+        }
+
+        /**
+         * Decides each conditional input in order like the interpreter does, and only runs its guarded steps if it's needed.
+         */
+        private void generateConditional(MethodVisitor method, int step) {
+            var conditionalNode = (ConditionalNode) plan.order[step];
+            var inputSlots = plan.inputSlots[step];
+            generateCheckContexts(method, step);
+            generateInputs(method, step, conditionalNode);
+
+            var neededLocals = new int[inputSlots.length];
+            Arrays.fill(neededLocals, -1);
+            for (int i = 0; i < inputSlots.length; i++) {
+                if (inputSlots[i] == -1 || !conditionalNode.isConditionalInput(i)) continue;
+                neededLocals[i] = allocate(ExecutionPlan.LANE_BOOLEAN);
+                method.visitVarInsn(ALOAD, 0);
+                method.visitFieldInsn(GETFIELD, CLASS_NAME, "node" + step, NODE);
+                method.visitTypeInsn(CHECKCAST, Type.getInternalName(ConditionalNode.class));
+                pushInt(method, i);
+                method.visitVarInsn(ALOAD, 0);
+                method.visitFieldInsn(GETFIELD, CLASS_NAME, "inputs" + step, VALUES);
+                method.visitInsn(ACONST_NULL);
+                method.visitMethodInsn(INVOKESTATIC, PLAN, "isInputNeeded", IS_INPUT_NEEDED, false);
+                method.visitVarInsn(ISTORE, neededLocals[i]);
+
+                var skipLabel = new Label();
+                method.visitVarInsn(ILOAD, neededLocals[i]);
+                method.visitJumpInsn(IFEQ, skipLabel);
+                for (var guardedStep : plan.guardedSteps[step][i]) {
+                    generateStep(method, guardedStep);
+                }
+                method.visitLabel(skipLabel);
+            }
+
+            // Needed inputs are only filled in afterwards, so that they can't affect whether other inputs are needed
+            for (int i = 0; i < inputSlots.length; i++) {
+                if (neededLocals[i] == -1) continue;
+                var skipLabel = new Label();
+                method.visitVarInsn(ILOAD, neededLocals[i]);
+                method.visitJumpInsn(IFEQ, skipLabel);
+                method.visitVarInsn(ALOAD, 0);
+                method.visitFieldInsn(GETFIELD, CLASS_NAME, "inputs" + step, VALUES);
+                pushInt(method, i);
+                method.visitVarInsn(ALOAD, objectLocals[inputSlots[i]]);
+                method.visitInsn(AASTORE);
+                method.visitLabel(skipLabel);
+            }
+            generateCall(method, step);
+        }
+
+        private void generateCheckContexts(MethodVisitor method, int step) {
+            if (plan.order[step].contexts.isEmpty())
+                return;
+            method.visitVarInsn(ALOAD, 0);
+            method.visitFieldInsn(GETFIELD, CLASS_NAME, "node" + step, NODE);
+            method.visitVarInsn(ALOAD, 1);
+            method.visitMethodInsn(INVOKESTATIC, PLAN, "checkContexts", "(" + NODE + CONTEXT + ")V", false);
+        }
+
+        /**
+         * Fills the input array of a step.
+         * @param conditionalNode The node of a conditional step, whose conditional inputs are left null, or null to fill all inputs.
+         */
+        private void generateInputs(MethodVisitor method, int step, @Nullable ConditionalNode conditionalNode) {
+            var inputSlots = plan.inputSlots[step];
+            if (inputSlots.length == 0)
+                return;
+            method.visitVarInsn(ALOAD, 0);
+            method.visitFieldInsn(GETFIELD, CLASS_NAME, "inputs" + step, VALUES);
+            for (int i = 0; i < inputSlots.length; i++) {
+                method.visitInsn(DUP);
+                pushInt(method, i);
+                if (inputSlots[i] == -1 || conditionalNode != null && conditionalNode.isConditionalInput(i)) {
+                    method.visitInsn(ACONST_NULL);
+                } else {
+                    method.visitVarInsn(ALOAD, objectLocals[inputSlots[i]]);
+                }
+                method.visitInsn(AASTORE);
+            }
+            method.visitInsn(POP);
+        }
+
+        private void generateCall(MethodVisitor method, int step) {
+            method.visitVarInsn(ALOAD, 0);
+            method.visitFieldInsn(GETFIELD, CLASS_NAME, "node" + step, NODE);
+            method.visitVarInsn(ALOAD, 0);
+            method.visitFieldInsn(GETFIELD, CLASS_NAME, "inputs" + step, VALUES);
+            method.visitVarInsn(ALOAD, 1);
+            method.visitVarInsn(ALOAD, 0);
+            method.visitFieldInsn(GETFIELD, CLASS_NAME, "outputs" + step, CONNECTORS);
+            method.visitVarInsn(ALOAD, 0);
+            method.visitFieldInsn(GETFIELD, CLASS_NAME, "usedOutputs" + step, BIT_SET);
+            method.visitVarInsn(ALOAD, 0);
+            method.visitFieldInsn(GETFIELD, CLASS_NAME, "sink" + step, SINK);
+            method.visitMethodInsn(INVOKESTATIC, PLAN, "process", "(" + NODE + VALUES + CONTEXT + CONNECTORS + BIT_SET + SINK + ")" + VALUES, false);
+
+            var outputSlot = plan.outputSlots[step];
+            for (int i = 0; i < plan.outputs[step].length; i++) {
+                var slot = outputSlot + i;
+                method.visitInsn(DUP);
+                pushInt(method, i);
+                method.visitInsn(AALOAD);
+                method.visitVarInsn(ASTORE, objectLocals[slot]);
+                if (primitiveLocals[slot] != -1) {
+                    method.visitVarInsn(ALOAD, objectLocals[slot]);
+                    if (plan.slotLanes[slot] == ExecutionPlan.LANE_NUMBER) {
+                        method.visitMethodInsn(INVOKESTATIC, COMPILED_GRAPH, "unboxNumber", "(L" + VALUE + ";)D", false);
+                    } else {
+                        method.visitMethodInsn(INVOKESTATIC, COMPILED_GRAPH, "unboxBoolean", "(L" + VALUE + ";)Z", false);
+                    }
+                    storePrimitive(method, slot);
+                }
+            }
+            method.visitInsn(POP);
+        }
+
+        private void loadPrimitive(MethodVisitor method, int slot) {
+            method.visitVarInsn(plan.slotLanes[slot] == ExecutionPlan.LANE_NUMBER ? DLOAD : ILOAD, primitiveLocals[slot]);
+        }
+
+        private void storePrimitive(MethodVisitor method, int slot) {
+            method.visitVarInsn(plan.slotLanes[slot] == ExecutionPlan.LANE_NUMBER ? DSTORE : ISTORE, primitiveLocals[slot]);
+        }
+    }
+}
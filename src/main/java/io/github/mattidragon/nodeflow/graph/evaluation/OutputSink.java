@@ -0,0 +1,139 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import com.mojang.datafixers.util.Either;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.context.ContextType;
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.effect.Effect;
+import io.github.mattidragon.nodeflow.graph.effect.EffectQueue;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.misc.EvaluationError;
+import net.minecraft.text.Text;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Receives the outputs of a node processed with {@link Node#process(DataValue[], OutputSink)}. Evaluation keeps one sink for each node and reuses it,
+ * so nodes using it don't allocate anything for their results. Sinks must not be kept after processing.
+ */
+public final class OutputSink {
+    private final Node node;
+    final DataValue<?>[] values;
+    private Context context;
+    @Nullable
+    private BitSet usedOutputs;
+    @Nullable
+    EvaluationError error;
+    @Nullable
+    private Text message;
+
+    OutputSink(Node node, int outputCount) {
+        this.node = node;
+        this.values = new DataValue<?>[outputCount];
+    }
+
+    /**
+     * Creates a standalone sink, for calling {@link Node#process(DataValue[], OutputSink)} outside of normal evaluation.
+     * @param usedOutputs The outputs the node has to compute, or null for all of them.
+     */
+    public static OutputSink create(Node node, Context context, @Nullable BitSet usedOutputs) {
+        var sink = new OutputSink(node, node.getOutputs().length);
+        sink.begin(context, usedOutputs);
+        return sink;
+    }
+
+    void begin(Context context, @Nullable BitSet usedOutputs) {
+        this.context = context;
+        this.usedOutputs = usedOutputs;
+        Arrays.fill(values, null);
+        error = null;
+        message = null;
+    }
+
+    /**
+     * Gets a context the node requires.
+     * @throws IllegalStateException If the node doesn't require the context.
+     */
+    public <T> T get(ContextType<T> type) {
+        if (!node.requiresContext(type))
+            throw new IllegalStateException("Node tried to use context it doesn't require");
+        return context.get(type);
+    }
+
+    /**
+     * Returns the whole context, without checking which contexts the node requires. Meant for adapting to other APIs, nodes should use {@link #get(ContextType)}.
+     */
+    public Context getContext() {
+        return context;
+    }
+
+    /**
+     * Returns which outputs have to be computed, or null if all of them have to.
+     */
+    @Nullable
+    public BitSet getUsedOutputs() {
+        return usedOutputs;
+    }
+
+    /**
+     * Checks whether anything reads an output. Unused outputs don't have to be set.
+     */
+    public boolean isOutputUsed(int output) {
+        return usedOutputs == null || usedOutputs.get(output);
+    }
+
+    /**
+     * Emits an effect, see {@link EffectQueue#emit}.
+     */
+    public void emit(Effect effect) {
+        EffectQueue.emit(context, effect);
+    }
+
+    public void set(int output, DataValue<?> value) {
+        values[output] = value;
+    }
+
+    /**
+     * Reports that the node failed.
+     * @return Always false, so that nodes can {@code return sink.fail(message);}
+     */
+    public boolean fail(Text message) {
+        this.message = message;
+        error = EvaluationError.Type.EVALUATION_ERROR.error(message);
+        return false;
+    }
+
+    /**
+     * Writes the result of {@link Node}'s {@link Either} based processing to this sink.
+     * @return Whether the result was successful.
+     */
+    public boolean accept(Either<DataValue<?>[], Text> result) {
+        var left = result.left();
+        if (left.isEmpty())
+            // Intellij doesn't understand either
+            //noinspection OptionalGetWithoutIsPresent
+            return fail(result.right().get());
+
+        var results = left.get();
+        if (results.length != values.length) {
+            error = EvaluationError.Type.UNEXPECTED_OUTPUT_COUNT.error(values.length, results.length);
+            return false;
+        }
+        System.arraycopy(results, 0, values, 0, results.length);
+        return true;
+    }
+
+    /**
+     * Converts the contents of this sink to the {@link Either} based result, for nodes that implement the old API using this one.
+     * @param success What {@link Node#process(DataValue[], OutputSink)} returned.
+     */
+    public Either<DataValue<?>[], Text> toResult(boolean success) {
+        if (success)
+            return Either.left(values.clone());
+        if (message != null)
+            return Either.right(message);
+        return Either.right(error == null ? Text.empty() : error.getName());
+    }
+}
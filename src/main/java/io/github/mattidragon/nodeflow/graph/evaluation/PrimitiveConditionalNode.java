@@ -0,0 +1,16 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+
+/**
+ * Has to be implemented by {@link ConditionalNode conditional nodes} that support primitive evaluation.
+ * Nodes that implement both interfaces separately are always evaluated with boxed values while they are conditional.
+ */
+public interface PrimitiveConditionalNode extends PrimitiveNode, ConditionalNode {
+    /**
+     * Decides whether a conditional input is needed when the node is evaluated on primitive lanes.
+     * @param frame The frame the node will be processed with. Conditional inputs have unspecified values here.
+     * @see #isInputNeeded(int, DataValue[])
+     */
+    boolean isInputNeeded(int input, PrimitiveFrame frame);
+}
@@ -0,0 +1,32 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+/**
+ * Gives a {@link PrimitiveNode} access to the number and boolean lanes of an evaluation. The same frame is reused for every node, so it must not be kept after processing.
+ */
+public final class PrimitiveFrame {
+    final double[] numbers;
+    final boolean[] booleans;
+    int[] inputSlots;
+    int outputSlot;
+
+    PrimitiveFrame(int slotCount) {
+        numbers = new double[slotCount];
+        booleans = new boolean[slotCount];
+    }
+
+    public double getNumber(int input) {
+        return numbers[inputSlots[input]];
+    }
+
+    public boolean getBoolean(int input) {
+        return booleans[inputSlots[input]];
+    }
+
+    public void setNumber(int output, double value) {
+        numbers[outputSlot + output] = value;
+    }
+
+    public void setBoolean(int output, boolean value) {
+        booleans[outputSlot + output] = value;
+    }
+}
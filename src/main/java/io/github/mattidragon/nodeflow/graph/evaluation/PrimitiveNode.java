@@ -0,0 +1,38 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Can be implemented by {@link Node nodes} that only have number and boolean connectors, to be evaluated without boxing their values.
+ * The generic {@link Node#process} still has to be implemented and has to give the same results, as it's used when primitive evaluation isn't possible.
+ */
+public interface PrimitiveNode {
+    /**
+     * Whether this node currently supports primitive evaluation.
+     */
+    default boolean isPrimitive() {
+        return true;
+    }
+
+    /**
+     * Processes the node by reading its inputs from and writing its outputs to the frame. Inputs and outputs are indexed in the same order as {@link Node#getInputs()} and {@link Node#getOutputs()}.
+     */
+    void processPrimitive(PrimitiveFrame frame);
+
+    /**
+     * The built-in operation this node performs, if any. Nodes with an op are evaluated by the op directly where that's faster, so {@link #processPrimitive} has to give the same results.
+     */
+    @Nullable
+    default PrimitiveOp getOp() {
+        return null;
+    }
+
+    /**
+     * Processes the node for every context of a batch evaluation at once. The default implementation calls {@link #processPrimitive} once for each context.
+     * @see ColumnKernels
+     */
+    default void processColumns(ColumnFrame frame) {
+        frame.processRows(this);
+    }
+}
@@ -0,0 +1,336 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+
+/**
+ * The built-in math and logic operations. This is the only place where they are defined: the {@link NodeType built-in node types}, the {@link GraphCompiler},
+ * the {@link RegisterProgram} and the {@link ColumnKernels column kernels} all evaluate them through their op instead of having their own copy.
+ * <p>
+ * Each op only implements the method of its {@link Shape}, the others throw {@link UnsupportedOperationException}.
+ * @see PrimitiveNode#getOp()
+ */
+public enum PrimitiveOp {
+    NOT(Shape.BOOLEAN_UNARY) {
+        @Override
+        public boolean applyBoolean(boolean input) {
+            return !input;
+        }
+    },
+    AND(false, false) {
+        @Override
+        public boolean applyBoolean(boolean first, boolean second) {
+            return first & second;
+        }
+    },
+    OR(true, true) {
+        @Override
+        public boolean applyBoolean(boolean first, boolean second) {
+            return first | second;
+        }
+    },
+    XOR(Shape.BOOLEAN_BINARY) {
+        @Override
+        public boolean applyBoolean(boolean first, boolean second) {
+            return first ^ second;
+        }
+    },
+    NAND(false, true) {
+        @Override
+        public boolean applyBoolean(boolean first, boolean second) {
+            return !(first & second);
+        }
+    },
+    NOR(true, false) {
+        @Override
+        public boolean applyBoolean(boolean first, boolean second) {
+            return !(first | second);
+        }
+    },
+    BOOL_EQL(Shape.BOOLEAN_BINARY) {
+        @Override
+        public boolean applyBoolean(boolean first, boolean second) {
+            return first == second;
+        }
+    },
+
+    NEGATE(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return -input;
+        }
+    },
+    ADD(Shape.NUMBER_BINARY) {
+        @Override
+        public double applyNumber(double first, double second) {
+            return first + second;
+        }
+    },
+    SUBTRACT(Shape.NUMBER_BINARY) {
+        @Override
+        public double applyNumber(double first, double second) {
+            return first - second;
+        }
+    },
+    MULTIPLY(Shape.NUMBER_BINARY) {
+        @Override
+        public double applyNumber(double first, double second) {
+            return first * second;
+        }
+    },
+    DIVIDE(Shape.NUMBER_BINARY) {
+        @Override
+        public double applyNumber(double first, double second) {
+            return first / second;
+        }
+    },
+    MODULO(Shape.NUMBER_BINARY) {
+        @Override
+        public double applyNumber(double first, double second) {
+            return first % second;
+        }
+    },
+    MIN(Shape.NUMBER_BINARY) {
+        @Override
+        public double applyNumber(double first, double second) {
+            return Math.min(first, second);
+        }
+    },
+    MAX(Shape.NUMBER_BINARY) {
+        @Override
+        public double applyNumber(double first, double second) {
+            return Math.max(first, second);
+        }
+    },
+    POW(Shape.NUMBER_BINARY) {
+        @Override
+        public double applyNumber(double first, double second) {
+            return Math.pow(first, second);
+        }
+    },
+
+    SIN(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.sin(input);
+        }
+    },
+    COS(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.cos(input);
+        }
+    },
+    TAN(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.tan(input);
+        }
+    },
+    SINH(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.sinh(input);
+        }
+    },
+    COSH(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.cosh(input);
+        }
+    },
+    TANH(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.tanh(input);
+        }
+    },
+    ASIN(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.asin(input);
+        }
+    },
+    ACOS(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.acos(input);
+        }
+    },
+    ATAN(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.atan(input);
+        }
+    },
+    LOG10(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.log10(input);
+        }
+    },
+    LOG(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.log(input);
+        }
+    },
+    CBRT(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.cbrt(input);
+        }
+    },
+    SQRT(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.sqrt(input);
+        }
+    },
+    CEIL(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.ceil(input);
+        }
+    },
+    FLOOR(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.floor(input);
+        }
+    },
+    ABS(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.abs(input);
+        }
+    },
+    SIGNUM(Shape.NUMBER_UNARY) {
+        @Override
+        public double applyNumber(double input) {
+            return Math.signum(input);
+        }
+    },
+
+    NUM_EQL(Shape.COMPARISON) {
+        @Override
+        public boolean compare(double first, double second) {
+            return first == second;
+        }
+    },
+    NUM_NEQL(Shape.COMPARISON) {
+        @Override
+        public boolean compare(double first, double second) {
+            return first != second;
+        }
+    },
+    LESS(Shape.COMPARISON) {
+        @Override
+        public boolean compare(double first, double second) {
+            return first < second;
+        }
+    },
+    GREATER(Shape.COMPARISON) {
+        @Override
+        public boolean compare(double first, double second) {
+            return first > second;
+        }
+    };
+
+    private final Shape shape;
+    private final boolean shortCircuit;
+    private final boolean decidingValue;
+    private final boolean decidedResult;
+
+    PrimitiveOp(Shape shape) {
+        this.shape = shape;
+        this.shortCircuit = false;
+        this.decidingValue = false;
+        this.decidedResult = false;
+    }
+
+    // Boolean operations that don't need their second input when the first one has the deciding value
+    PrimitiveOp(boolean decidingValue, boolean decidedResult) {
+        this.shape = Shape.BOOLEAN_BINARY;
+        this.shortCircuit = true;
+        this.decidingValue = decidingValue;
+        this.decidedResult = decidedResult;
+    }
+
+    public Shape getShape() {
+        return shape;
+    }
+
+    /**
+     * Whether the result is decided by the first input alone when it equals {@link #getDecidingValue()}.
+     */
+    public boolean isShortCircuit() {
+        return shortCircuit;
+    }
+
+    public boolean getDecidingValue() {
+        return decidingValue;
+    }
+
+    /**
+     * The result when the first input has the deciding value.
+     */
+    public boolean getDecidedResult() {
+        return decidedResult;
+    }
+
+    public double applyNumber(double input) {
+        throw new UnsupportedOperationException(this + " isn't a unary number operation");
+    }
+
+    public double applyNumber(double first, double second) {
+        throw new UnsupportedOperationException(this + " isn't a binary number operation");
+    }
+
+    public boolean compare(double first, double second) {
+        throw new UnsupportedOperationException(this + " isn't a comparison");
+    }
+
+    public boolean applyBoolean(boolean input) {
+        throw new UnsupportedOperationException(this + " isn't a unary boolean operation");
+    }
+
+    public boolean applyBoolean(boolean first, boolean second) {
+        throw new UnsupportedOperationException(this + " isn't a binary boolean operation");
+    }
+
+    /**
+     * The inputs and output of an op, which decide the method it implements.
+     */
+    public enum Shape {
+        NUMBER_UNARY(1, false, "applyNumber", "(D)D"),
+        NUMBER_BINARY(2, false, "applyNumber", "(DD)D"),
+        COMPARISON(2, false, "compare", "(DD)Z"),
+        BOOLEAN_UNARY(1, true, "applyBoolean", "(Z)Z"),
+        BOOLEAN_BINARY(2, true, "applyBoolean", "(ZZ)Z");
+
+        private final int arity;
+        private final boolean booleanInputs;
+        // The method implementing ops of this shape, for generated code
+        final String methodName;
+        final String methodDescriptor;
+
+        Shape(int arity, boolean booleanInputs, String methodName, String methodDescriptor) {
+            this.arity = arity;
+            this.booleanInputs = booleanInputs;
+            this.methodName = methodName;
+            this.methodDescriptor = methodDescriptor;
+        }
+
+        public int getArity() {
+            return arity;
+        }
+
+        public boolean hasBooleanInputs() {
+            return booleanInputs;
+        }
+
+        public boolean hasBooleanOutput() {
+            return this != NUMBER_UNARY && this != NUMBER_BINARY;
+        }
+    }
+}
@@ -0,0 +1,507 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.data.DataType;
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.misc.EvaluationError;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A graph flattened into a linear stream of instructions for a register machine. Each slot of the {@link ExecutionPlan} is a register, and nodes with a {@link PrimitiveOp}
+ * are applied directly to number and boolean registers. All other nodes are evaluated by calling {@link Node#process}.
+ * Steps that only feed an unneeded conditional input are jumped over, like the interpreter skips them.
+ * Unlike the {@link GraphCompiler}, this doesn't generate any classes, so it works everywhere and doesn't use metaspace. Discarded as soon as the graph changes.
+ * @see Graph#evaluateProgram(Context)
+ */
+public final class RegisterProgram {
+    private static final DataValue<Boolean> TRUE = DataType.BOOLEAN.makeValue(true);
+    private static final DataValue<Boolean> FALSE = DataType.BOOLEAN.makeValue(false);
+
+    // Operands are slots, except for the instructions that take the step of a node
+    private static final int CALL = 0;
+    private static final int BOX_NUMBER = 1;
+    private static final int BOX_BOOLEAN = 2;
+    private static final int UNBOX_NUMBER = 3;
+    private static final int UNBOX_BOOLEAN = 4;
+    // Conditional steps: BEGIN_CONDITIONAL fills the inputs that decide, then DECIDE skips the guarded steps of each unneeded input and CALL_CONDITIONAL processes the node
+    private static final int BEGIN_CONDITIONAL = 5;
+    private static final int DECIDE = 6;
+    private static final int CALL_CONDITIONAL = 7;
+    // Nodes with a primitive op: one opcode for each op, followed by the output slot and the input slots. The ops are written out here instead of calling PrimitiveOp,
+    // so that the dispatch doesn't go through a virtual call that sees every op. Must stay in the order of PrimitiveOp.
+    private static final int OPCODE_BASE = 8;
+    private static final int OP_NOT = OPCODE_BASE + 0;
+    private static final int OP_AND = OPCODE_BASE + 1;
+    private static final int OP_OR = OPCODE_BASE + 2;
+    private static final int OP_XOR = OPCODE_BASE + 3;
+    private static final int OP_NAND = OPCODE_BASE + 4;
+    private static final int OP_NOR = OPCODE_BASE + 5;
+    private static final int OP_BOOL_EQL = OPCODE_BASE + 6;
+    private static final int OP_NEGATE = OPCODE_BASE + 7;
+    private static final int OP_ADD = OPCODE_BASE + 8;
+    private static final int OP_SUBTRACT = OPCODE_BASE + 9;
+    private static final int OP_MULTIPLY = OPCODE_BASE + 10;
+    private static final int OP_DIVIDE = OPCODE_BASE + 11;
+    private static final int OP_MODULO = OPCODE_BASE + 12;
+    private static final int OP_MIN = OPCODE_BASE + 13;
+    private static final int OP_MAX = OPCODE_BASE + 14;
+    private static final int OP_POW = OPCODE_BASE + 15;
+    private static final int OP_SIN = OPCODE_BASE + 16;
+    private static final int OP_COS = OPCODE_BASE + 17;
+    private static final int OP_TAN = OPCODE_BASE + 18;
+    private static final int OP_SINH = OPCODE_BASE + 19;
+    private static final int OP_COSH = OPCODE_BASE + 20;
+    private static final int OP_TANH = OPCODE_BASE + 21;
+    private static final int OP_ASIN = OPCODE_BASE + 22;
+    private static final int OP_ACOS = OPCODE_BASE + 23;
+    private static final int OP_ATAN = OPCODE_BASE + 24;
+    private static final int OP_LOG10 = OPCODE_BASE + 25;
+    private static final int OP_LOG = OPCODE_BASE + 26;
+    private static final int OP_CBRT = OPCODE_BASE + 27;
+    private static final int OP_SQRT = OPCODE_BASE + 28;
+    private static final int OP_CEIL = OPCODE_BASE + 29;
+    private static final int OP_FLOOR = OPCODE_BASE + 30;
+    private static final int OP_ABS = OPCODE_BASE + 31;
+    private static final int OP_SIGNUM = OPCODE_BASE + 32;
+    private static final int OP_NUM_EQL = OPCODE_BASE + 33;
+    private static final int OP_NUM_NEQL = OPCODE_BASE + 34;
+    private static final int OP_LESS = OPCODE_BASE + 35;
+    private static final int OP_GREATER = OPCODE_BASE + 36;
+
+    static {
+        if (OP_GREATER - OPCODE_BASE != PrimitiveOp.GREATER.ordinal() || PrimitiveOp.values().length != OP_GREATER - OPCODE_BASE + 1)
+            throw new IllegalStateException("Opcodes of RegisterProgram don't match PrimitiveOp");
+    }
+
+    private final ExecutionPlan plan;
+    private final int[] code;
+    // Registers are only used by one evaluation at a time
+    private final AtomicReference<Registers> idleRegisters = new AtomicReference<>();
+
+    private RegisterProgram(ExecutionPlan plan, int[] code) {
+        this.plan = plan;
+        this.code = code;
+    }
+
+    /**
+     * Assembles a plan into a program. Usually you want {@link ExecutionPlan#getProgram()} instead, which caches the result.
+     * @return The program, or null if the plan can't be assembled.
+     */
+    @Nullable
+    public static RegisterProgram assemble(ExecutionPlan plan) {
+        // Such plans never run, and slots might not have the lane their readers expect
+        if (plan.mismatchedConnections)
+            return null;
+
+        var steps = plan.order.length;
+        var ops = new PrimitiveOp[steps];
+        for (int i = 0; i < steps; i++) {
+            // Conditional steps have to decide which inputs are needed, unless nothing depends on it
+            ops[i] = plan.merged[i] || plan.folded[i] || hasGuardedSteps(plan, i) ? null : getOp(plan, i);
+        }
+
+        // Find the slots that have to be boxed for nodes or unboxed for ops
+        var boxed = new boolean[plan.slotCount];
+        var unboxed = new boolean[plan.slotCount];
+        for (int i = 0; i < steps; i++) {
+            if (plan.merged[i] || plan.folded[i]) continue;
+            for (var slot : plan.inputSlots[i]) {
+                if (slot == -1 || plan.folded[plan.slotProducers[slot]]) continue;
+                var producedByOp = ops[plan.slotProducers[slot]] != null;
+                if (ops[i] == null && producedByOp)
+                    boxed[slot] = true;
+                if (ops[i] != null && !producedByOp)
+                    unboxed[slot] = true;
+            }
+        }
+
+        var code = new IntArrayList();
+        for (int i = 0; i < steps; i++) {
+            if (plan.merged[i] || plan.folded[i] || plan.guarded[i]) continue;
+            emitStep(plan, code, ops, boxed, unboxed, i);
+        }
+        return new RegisterProgram(plan, code.toIntArray());
+    }
+
+    private static void emitStep(ExecutionPlan plan, IntArrayList code, PrimitiveOp[] ops, boolean[] boxed, boolean[] unboxed, int step) {
+        var outputSlot = plan.outputSlots[step];
+        if (ops[step] != null) {
+            code.add(OPCODE_BASE + ops[step].ordinal());
+            code.add(outputSlot);
+            code.addElements(code.size(), plan.inputSlots[step]);
+            if (boxed[outputSlot]) {
+                code.add(plan.slotLanes[outputSlot] == ExecutionPlan.LANE_NUMBER ? BOX_NUMBER : BOX_BOOLEAN);
+                code.add(outputSlot);
+            }
+            return;
+        }
+
+        if (plan.guardedSteps[step] != null) {
+            // Decides each conditional input in order like the interpreter does, jumping over the guarded steps of unneeded inputs
+            var conditionalNode = (ConditionalNode) plan.order[step];
+            var inputSlots = plan.inputSlots[step];
+            code.add(BEGIN_CONDITIONAL);
+            code.add(step);
+            for (int j = 0; j < inputSlots.length; j++) {
+                if (inputSlots[j] == -1 || !conditionalNode.isConditionalInput(j)) continue;
+                code.add(DECIDE);
+                code.add(step);
+                code.add(j);
+                var skipIndex = code.size();
+                code.add(0);
+                for (var guardedStep : plan.guardedSteps[step][j]) {
+                    emitStep(plan, code, ops, boxed, unboxed, guardedStep);
+                }
+                code.set(skipIndex, code.size() - skipIndex - 1);
+            }
+            code.add(CALL_CONDITIONAL);
+        } else {
+            code.add(CALL);
+        }
+        code.add(step);
+        for (int slot = outputSlot; slot < outputSlot + plan.outputs[step].length; slot++) {
+            if (!unboxed[slot]) continue;
+            code.add(plan.slotLanes[slot] == ExecutionPlan.LANE_NUMBER ? UNBOX_NUMBER : UNBOX_BOOLEAN);
+            code.add(slot);
+        }
+    }
+
+    private static boolean hasGuardedSteps(ExecutionPlan plan, int step) {
+        var guardedSteps = plan.guardedSteps[step];
+        return guardedSteps != null && Arrays.stream(guardedSteps).anyMatch(steps -> steps.length > 0);
+    }
+
+    @Nullable
+    private static PrimitiveOp getOp(ExecutionPlan plan, int step) {
+        if (!(plan.order[step] instanceof PrimitiveNode primitiveNode))
+            return null;
+        var op = primitiveNode.getOp();
+        if (op == null || !plan.order[step].contexts.isEmpty() || plan.outputs[step].length != 1)
+            return null;
+        for (var input : plan.inputs[step]) {
+            if (ExecutionPlan.laneOf(input) == ExecutionPlan.LANE_NONE)
+                return null;
+        }
+        for (var slot : plan.inputSlots[step]) {
+            if (slot == -1)
+                return null;
+        }
+        if (plan.slotLanes[plan.outputSlots[step]] == ExecutionPlan.LANE_NONE)
+            return null;
+        return op;
+    }
+
+    /**
+     * Returns the number of ints in the instruction stream.
+     */
+    public int size() {
+        return code.length;
+    }
+
+    /**
+     * Evaluates the program. Behaves the same as {@link ExecutionPlan#evaluate(Context)}, including skipping the steps that only feed unneeded conditional inputs.
+     */
+    public List<EvaluationError> evaluate(Context context) {
+        var error = plan.validate();
+        if (error != null)
+            return List.of(error);
+
+        var registers = idleRegisters.getAndSet(null);
+        // Only happens on the first evaluation or when the program is evaluated concurrently or recursively
+        if (registers == null)
+            registers = new Registers(plan);
+        try {
+            run(registers, context);
+        } catch (EvaluationFailure failure) {
+            return List.of(failure.error);
+        } finally {
+            idleRegisters.set(registers);
+        }
+        return plan.checkResolved();
+    }
+
+    private void run(Registers registers, Context context) {
+        var code = this.code;
+        var numbers = registers.numbers;
+        var booleans = registers.booleans;
+        var values = registers.values;
+        var pc = 0;
+        while (pc < code.length) {
+            switch (code[pc]) {
+                case CALL -> {
+                    call(registers, context, code[pc + 1]);
+                    pc += 2;
+                }
+                case BEGIN_CONDITIONAL -> {
+                    beginConditional(registers, context, code[pc + 1]);
+                    pc += 2;
+                }
+                case DECIDE -> {
+                    var step = code[pc + 1];
+                    var input = code[pc + 2];
+                    var needed = ExecutionPlan.isInputNeeded((ConditionalNode) plan.order[step], input, registers.inputs[step], null);
+                    registers.neededInputs[step][input] = needed;
+                    pc += needed ? 4 : 4 + code[pc + 3];
+                }
+                case CALL_CONDITIONAL -> {
+                    callConditional(registers, context, code[pc + 1]);
+                    pc += 2;
+                }
+                case BOX_NUMBER -> {
+                    values[code[pc + 1]] = DataType.NUMBER.makeValue(numbers[code[pc + 1]]);
+                    pc += 2;
+                }
+                case BOX_BOOLEAN -> {
+                    values[code[pc + 1]] = booleans[code[pc + 1]] ? TRUE : FALSE;
+                    pc += 2;
+                }
+                case UNBOX_NUMBER -> {
+                    numbers[code[pc + 1]] = values[code[pc + 1]].getAs(DataType.NUMBER);
+                    pc += 2;
+                }
+                case UNBOX_BOOLEAN -> {
+                    booleans[code[pc + 1]] = values[code[pc + 1]].getAs(DataType.BOOLEAN);
+                    pc += 2;
+                }
+
+                case OP_NOT -> {
+                    booleans[code[pc + 1]] = !booleans[code[pc + 2]];
+                    pc += 3;
+                }
+                case OP_AND -> {
+                    booleans[code[pc + 1]] = booleans[code[pc + 2]] & booleans[code[pc + 3]];
+                    pc += 4;
+                }
+                case OP_OR -> {
+                    booleans[code[pc + 1]] = booleans[code[pc + 2]] | booleans[code[pc + 3]];
+                    pc += 4;
+                }
+                case OP_XOR -> {
+                    booleans[code[pc + 1]] = booleans[code[pc + 2]] ^ booleans[code[pc + 3]];
+                    pc += 4;
+                }
+                case OP_NAND -> {
+                    booleans[code[pc + 1]] = !(booleans[code[pc + 2]] & booleans[code[pc + 3]]);
+                    pc += 4;
+                }
+                case OP_NOR -> {
+                    booleans[code[pc + 1]] = !(booleans[code[pc + 2]] | booleans[code[pc + 3]]);
+                    pc += 4;
+                }
+                case OP_BOOL_EQL -> {
+                    booleans[code[pc + 1]] = booleans[code[pc + 2]] == booleans[code[pc + 3]];
+                    pc += 4;
+                }
+                case OP_NEGATE -> {
+                    numbers[code[pc + 1]] = -numbers[code[pc + 2]];
+                    pc += 3;
+                }
+                case OP_ADD -> {
+                    numbers[code[pc + 1]] = numbers[code[pc + 2]] + numbers[code[pc + 3]];
+                    pc += 4;
+                }
+                case OP_SUBTRACT -> {
+                    numbers[code[pc + 1]] = numbers[code[pc + 2]] - numbers[code[pc + 3]];
+                    pc += 4;
+                }
+                case OP_MULTIPLY -> {
+                    numbers[code[pc + 1]] = numbers[code[pc + 2]] * numbers[code[pc + 3]];
+                    pc += 4;
+                }
+                case OP_DIVIDE -> {
+                    numbers[code[pc + 1]] = numbers[code[pc + 2]] / numbers[code[pc + 3]];
+                    pc += 4;
+                }
+                case OP_MODULO -> {
+                    numbers[code[pc + 1]] = numbers[code[pc + 2]] % numbers[code[pc + 3]];
+                    pc += 4;
+                }
+                case OP_MIN -> {
+                    numbers[code[pc + 1]] = Math.min(numbers[code[pc + 2]], numbers[code[pc + 3]]);
+                    pc += 4;
+                }
+                case OP_MAX -> {
+                    numbers[code[pc + 1]] = Math.max(numbers[code[pc + 2]], numbers[code[pc + 3]]);
+                    pc += 4;
+                }
+                case OP_POW -> {
+                    numbers[code[pc + 1]] = Math.pow(numbers[code[pc + 2]], numbers[code[pc + 3]]);
+                    pc += 4;
+                }
+                case OP_SIN -> {
+                    numbers[code[pc + 1]] = Math.sin(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_COS -> {
+                    numbers[code[pc + 1]] = Math.cos(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_TAN -> {
+                    numbers[code[pc + 1]] = Math.tan(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_SINH -> {
+                    numbers[code[pc + 1]] = Math.sinh(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_COSH -> {
+                    numbers[code[pc + 1]] = Math.cosh(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_TANH -> {
+                    numbers[code[pc + 1]] = Math.tanh(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_ASIN -> {
+                    numbers[code[pc + 1]] = Math.asin(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_ACOS -> {
+                    numbers[code[pc + 1]] = Math.acos(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_ATAN -> {
+                    numbers[code[pc + 1]] = Math.atan(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_LOG10 -> {
+                    numbers[code[pc + 1]] = Math.log10(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_LOG -> {
+                    numbers[code[pc + 1]] = Math.log(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_CBRT -> {
+                    numbers[code[pc + 1]] = Math.cbrt(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_SQRT -> {
+                    numbers[code[pc + 1]] = Math.sqrt(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_CEIL -> {
+                    numbers[code[pc + 1]] = Math.ceil(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_FLOOR -> {
+                    numbers[code[pc + 1]] = Math.floor(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_ABS -> {
+                    numbers[code[pc + 1]] = Math.abs(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_SIGNUM -> {
+                    numbers[code[pc + 1]] = Math.signum(numbers[code[pc + 2]]);
+                    pc += 3;
+                }
+                case OP_NUM_EQL -> {
+                    booleans[code[pc + 1]] = numbers[code[pc + 2]] == numbers[code[pc + 3]];
+                    pc += 4;
+                }
+                case OP_NUM_NEQL -> {
+                    booleans[code[pc + 1]] = numbers[code[pc + 2]] != numbers[code[pc + 3]];
+                    pc += 4;
+                }
+                case OP_LESS -> {
+                    booleans[code[pc + 1]] = numbers[code[pc + 2]] < numbers[code[pc + 3]];
+                    pc += 4;
+                }
+                case OP_GREATER -> {
+                    booleans[code[pc + 1]] = numbers[code[pc + 2]] > numbers[code[pc + 3]];
+                    pc += 4;
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + code[pc]);
+            }
+        }
+    }
+
+    private void call(Registers registers, Context context, int step) {
+        var node = plan.order[step];
+        if (!node.contexts.isEmpty())
+            ExecutionPlan.checkContexts(node, context);
+
+        var inputSlots = plan.inputSlots[step];
+        var nodeInputs = registers.inputs[step];
+        for (int i = 0; i < inputSlots.length; i++) {
+            nodeInputs[i] = inputSlots[i] == -1 ? null : registers.values[inputSlots[i]];
+        }
+        var results = ExecutionPlan.process(node, nodeInputs, context, plan.outputs[step], plan.usedOutputs[step], registers.sinks[step]);
+        System.arraycopy(results, 0, registers.values, plan.outputSlots[step], results.length);
+    }
+
+    /**
+     * Checks the contexts of a conditional step and fills in the inputs that decide which conditional inputs are needed.
+     */
+    private void beginConditional(Registers registers, Context context, int step) {
+        var node = plan.order[step];
+        if (!node.contexts.isEmpty())
+            ExecutionPlan.checkContexts(node, context);
+
+        var conditionalNode = (ConditionalNode) node;
+        var inputSlots = plan.inputSlots[step];
+        var nodeInputs = registers.inputs[step];
+        var needed = registers.neededInputs[step];
+        for (int i = 0; i < inputSlots.length; i++) {
+            nodeInputs[i] = inputSlots[i] == -1 || conditionalNode.isConditionalInput(i) ? null : registers.values[inputSlots[i]];
+            needed[i] = false;
+        }
+    }
+
+    /**
+     * Processes a conditional step once its needed inputs have been computed.
+     */
+    private void callConditional(Registers registers, Context context, int step) {
+        var inputSlots = plan.inputSlots[step];
+        var nodeInputs = registers.inputs[step];
+        var needed = registers.neededInputs[step];
+        // Needed inputs are only filled in afterwards, so that they can't affect whether other inputs are needed
+        for (int i = 0; i < inputSlots.length; i++) {
+            if (needed[i])
+                nodeInputs[i] = registers.values[inputSlots[i]];
+        }
+        var results = ExecutionPlan.process(plan.order[step], nodeInputs, context, plan.outputs[step], plan.usedOutputs[step], registers.sinks[step]);
+        System.arraycopy(results, 0, registers.values, plan.outputSlots[step], results.length);
+    }
+
+    private static class Registers {
+        private final double[] numbers;
+        private final boolean[] booleans;
+        private final DataValue<?>[] values;
+        private final DataValue<?>[][] inputs;
+        private final boolean[][] neededInputs;
+        private final OutputSink[] sinks;
+
+        private Registers(ExecutionPlan plan) {
+            numbers = new double[plan.slotCount];
+            booleans = new boolean[plan.slotCount];
+            values = plan.foldedValues.clone();
+            inputs = new DataValue<?>[plan.order.length][];
+            neededInputs = new boolean[plan.order.length][];
+            sinks = plan.createSinks();
+            for (int i = 0; i < plan.order.length; i++) {
+                inputs[i] = new DataValue<?>[plan.inputs[i].length];
+                if (plan.guardedSteps[i] != null)
+                    neededInputs[i] = new boolean[plan.inputs[i].length];
+            }
+
+            // Folded values never change, so they only have to be unboxed once
+            for (int slot = 0; slot < plan.slotCount; slot++) {
+                var value = values[slot];
+                if (value == null) continue;
+                if (plan.slotLanes[slot] == ExecutionPlan.LANE_NUMBER)
+                    numbers[slot] = value.getAs(DataType.NUMBER);
+                else if (plan.slotLanes[slot] == ExecutionPlan.LANE_BOOLEAN)
+                    booleans[slot] = value.getAs(DataType.BOOLEAN);
+            }
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.NodeFlow;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * Decides when graphs evaluated with {@link ExecutionPlan#evaluateTiered} move between {@link ExecutionTier tiers}. Each plan counts its evaluations,
+ * and is promoted to a {@link RegisterProgram} and later to a {@link CompiledGraph} once the count reaches the thresholds.
+ * Only a limited number of graphs stay compiled, and the least recently evaluated one is demoted back to its program when another one gets compiled.
+ * Graphs that haven't been evaluated for a while go cold and are demoted all the way back to interpreted, releasing both their program and compiled graph.
+ * Editing a graph discards its plan, so edited graphs also start over as interpreted.
+ * <p>
+ * Promoted plans are only tracked weakly, so plans of graphs that are unloaded without being released are still collected.
+ */
+public final class TieredExecution {
+    private static final TieredExecution INSTANCE = new TieredExecution();
+
+    // How often idle plans are looked for, in ticks
+    private static final int IDLE_CHECK_INTERVAL = 20;
+
+    // Both guarded by compiledPlans. Plans are in at most one of them.
+    private final Set<ExecutionPlan> compiledPlans = Collections.newSetFromMap(new WeakHashMap<>());
+    private final Set<ExecutionPlan> programPlans = Collections.newSetFromMap(new WeakHashMap<>());
+    private volatile int programThreshold = 8;
+    private volatile int compileThreshold = 200;
+    private volatile int maxCompiled = 256;
+    private volatile int idleTicks = 1200;
+    private volatile long tick = 0;
+
+    private TieredExecution() {
+    }
+
+    public static TieredExecution getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Sets after how many evaluations graphs start using a {@link RegisterProgram}.
+     */
+    public void setProgramThreshold(int threshold) {
+        if (threshold < 0)
+            throw new IllegalArgumentException("Threshold can't be negative");
+        programThreshold = threshold;
+    }
+
+    public int getProgramThreshold() {
+        return programThreshold;
+    }
+
+    /**
+     * Sets after how many evaluations graphs get compiled. Demoted graphs have to reach it again to be compiled again.
+     */
+    public void setCompileThreshold(int threshold) {
+        if (threshold < 0)
+            throw new IllegalArgumentException("Threshold can't be negative");
+        compileThreshold = threshold;
+    }
+
+    public int getCompileThreshold() {
+        return compileThreshold;
+    }
+
+    /**
+     * Sets how many graphs can be compiled at once. Graphs over the limit are demoted immediately, least recently used first.
+     */
+    public void setMaxCompiled(int maxCompiled) {
+        if (maxCompiled < 0)
+            throw new IllegalArgumentException("Limit can't be negative");
+        this.maxCompiled = maxCompiled;
+        synchronized (compiledPlans) {
+            evictOverLimit();
+        }
+    }
+
+    public int getMaxCompiled() {
+        return maxCompiled;
+    }
+
+    /**
+     * Sets after how many ticks without evaluations graphs are demoted back to interpreted.
+     */
+    public void setIdleTicks(int idleTicks) {
+        if (idleTicks < 1)
+            throw new IllegalArgumentException("Idle ticks have to be positive");
+        this.idleTicks = idleTicks;
+    }
+
+    public int getIdleTicks() {
+        return idleTicks;
+    }
+
+    /**
+     * Returns the number of ticks so far, which is when plans are considered used for idle demotion.
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * Returns how many graphs are currently compiled.
+     */
+    public int getCompiledCount() {
+        synchronized (compiledPlans) {
+            return compiledPlans.size();
+        }
+    }
+
+    /**
+     * Returns how many graphs currently use a program or are compiled.
+     */
+    public int getPromotedCount() {
+        synchronized (compiledPlans) {
+            return compiledPlans.size() + programPlans.size();
+        }
+    }
+
+    /**
+     * Advances the tick and demotes graphs that have gone cold. Called automatically at the end of each server tick.
+     */
+    public void tick() {
+        var tick = ++this.tick;
+        if (tick % IDLE_CHECK_INTERVAL != 0) return;
+        var idleBefore = tick - idleTicks;
+        synchronized (compiledPlans) {
+            demoteIdle(compiledPlans, idleBefore);
+            demoteIdle(programPlans, idleBefore);
+        }
+    }
+
+    private void demoteIdle(Set<ExecutionPlan> plans, long idleBefore) {
+        var iterator = plans.iterator();
+        while (iterator.hasNext()) {
+            var plan = iterator.next();
+            if (plan.lastUsedTick >= idleBefore) continue;
+            iterator.remove();
+            plan.reset();
+        }
+    }
+
+    /**
+     * Demotes all graphs back to interpreted. Called automatically when the server stops.
+     */
+    public void clear() {
+        synchronized (compiledPlans) {
+            for (var plan : compiledPlans) {
+                plan.reset();
+            }
+            for (var plan : programPlans) {
+                plan.reset();
+            }
+            compiledPlans.clear();
+            programPlans.clear();
+            tick = 0;
+        }
+    }
+
+    /**
+     * Tracks a plan that started using its program.
+     */
+    void track(ExecutionPlan plan) {
+        synchronized (compiledPlans) {
+            programPlans.add(plan);
+        }
+    }
+
+    /**
+     * Tracks a newly compiled plan, demoting others if there are too many.
+     */
+    void admit(ExecutionPlan plan) {
+        synchronized (compiledPlans) {
+            programPlans.remove(plan);
+            compiledPlans.add(plan);
+            evictOverLimit();
+        }
+    }
+
+    /**
+     * Stops tracking a plan that is no longer used, so that its program and compiled graph can be collected.
+     */
+    void release(ExecutionPlan plan) {
+        synchronized (compiledPlans) {
+            compiledPlans.remove(plan);
+            programPlans.remove(plan);
+        }
+    }
+
+    private void evictOverLimit() {
+        // Promotions are rare, so a scan is cheaper than keeping the plans ordered on every evaluation
+        while (compiledPlans.size() > maxCompiled) {
+            ExecutionPlan oldest = null;
+            for (var plan : compiledPlans) {
+                if (oldest == null || plan.lastUsed < oldest.lastUsed)
+                    oldest = plan;
+            }
+            compiledPlans.remove(oldest);
+            oldest.demote();
+            if (oldest.getTier() == ExecutionTier.PROGRAM)
+                programPlans.add(oldest);
+            NodeFlow.LOGGER.debug("Demoted least recently used compiled graph, {} graphs remain compiled", compiledPlans.size());
+        }
+    }
+}
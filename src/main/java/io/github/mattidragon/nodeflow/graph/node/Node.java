@@ -6,14 +6,22 @@ import io.github.mattidragon.nodeflow.graph.Graph;
 import io.github.mattidragon.nodeflow.graph.context.Context;
 import io.github.mattidragon.nodeflow.graph.context.ContextType;
 import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.effect.Effect;
+import io.github.mattidragon.nodeflow.graph.effect.EffectQueue;
+import io.github.mattidragon.nodeflow.graph.evaluation.OutputSink;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.BitSet;
 import java.util.List;
 import java.util.UUID;
 
+/**
+ * A node in a {@link Graph}. Evaluation caches a lot of information derived from nodes, such as folded constants, merged duplicates and validation results,
+ * so nodes with configuration have to call {@link #onConfigChanged()} whenever it changes.
+ */
 public abstract class Node {
     public UUID id = UUID.randomUUID();
     public final NodeType<?> type;
@@ -24,11 +32,19 @@ public abstract class Node {
     @Nullable
     public String nickname = null;
     protected final Graph graph;
+    // Indexes of the contexts, for quick checks in ContextProvider
+    private final BitSet contextIndexes = new BitSet();
 
     protected Node(NodeType<?> type, List<ContextType<?>> contexts, Graph graph) {
         this.type = type;
         this.contexts = contexts;
         this.graph = graph;
+        for (var context : contexts) {
+            // Unregistered types are only found through the list
+            var index = context.findIndex();
+            if (index != -1)
+                contextIndexes.set(index);
+        }
     }
 
     public abstract Connector<?>[] getOutputs();
@@ -39,11 +55,44 @@ public abstract class Node {
     }
 
     public final Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, Context context) {
-        return process(inputs, new ContextProvider(context));
+        return process(inputs, context, null);
+    }
+
+    /**
+     * Processes this node, only computing the outputs that are used.
+     * @param usedOutputs The indexes of the outputs that are connected, or null if all outputs are needed. Nodes may return null for unused outputs, see {@link ContextProvider#isOutputUsed(int)}.
+     */
+    public final Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, Context context, @Nullable BitSet usedOutputs) {
+        return process(inputs, new ContextProvider(context, usedOutputs));
     }
 
     protected abstract Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context);
 
+    /**
+     * Processes this node by writing its outputs to the sink instead of returning them, which lets evaluation avoid allocating results.
+     * The default implementation adapts {@link #process(DataValue[], ContextProvider)}. Nodes that override this can implement that method using {@link #processWithSink}.
+     * @return Whether processing succeeded. Failures have to be reported with {@link OutputSink#fail}, which returns false.
+     */
+    public boolean process(DataValue<?>[] inputs, OutputSink sink) {
+        return sink.accept(process(inputs, new ContextProvider(sink.getContext(), sink.getUsedOutputs())));
+    }
+
+    /**
+     * Implements {@link #process(DataValue[], ContextProvider)} using {@link #process(DataValue[], OutputSink)}, for nodes that override the latter.
+     */
+    protected final Either<DataValue<?>[], Text> processWithSink(DataValue<?>[] inputs, ContextProvider context) {
+        var sink = OutputSink.create(this, context.context, context.usedOutputs);
+        return sink.toResult(process(inputs, sink));
+    }
+
+    /**
+     * Checks whether this node requires a context type, meaning it's listed in {@link #contexts}.
+     */
+    public final boolean requiresContext(ContextType<?> type) {
+        var index = type.findIndex();
+        return index != -1 && contextIndexes.get(index) || contexts.contains(type);
+    }
+
     /**
      * Validates this nodes configuration as well as possible.
      *
@@ -67,6 +116,13 @@ public abstract class Node {
         return true;
     }
 
+    /**
+     * Called when the configuration of this node changes, to discard everything the graph derived from it. Configuration setters have to call this, and {@link #readNbt} calls it for all subclasses.
+     */
+    protected void onConfigChanged() {
+        graph.invalidatePlan();
+    }
+
     public void readNbt(NbtCompound data) {
         if (data.containsUuid("id")) // Default to old/random
             id = data.getUuid("id");
@@ -75,6 +131,8 @@ public abstract class Node {
         tag = NodeTag.fromString(data.getString("tag"));
         if (data.contains("nickname"))
             nickname = data.getString("nickname");
+        // Subclasses read their configuration after this, which is fine as the plan is only recreated on the next evaluation
+        onConfigChanged();
     }
 
     public void writeNbt(NbtCompound data) {
@@ -96,15 +154,32 @@ public abstract class Node {
 
     protected final class ContextProvider {
         private final Context context;
+        @Nullable
+        private final BitSet usedOutputs;
 
-        private ContextProvider(Context context) {
+        private ContextProvider(Context context, @Nullable BitSet usedOutputs) {
             this.context = context;
+            this.usedOutputs = usedOutputs;
+        }
+
+        /**
+         * Checks whether anything reads an output. Nodes can skip computing unused outputs and return null for them instead.
+         */
+        public boolean isOutputUsed(int output) {
+            return usedOutputs == null || usedOutputs.get(output);
         }
 
         public <T> T get(ContextType<T> type) {
-            if (!contexts.contains(type))
+            if (!requiresContext(type))
                 throw new IllegalStateException("Node tried to use context it doesn't require");
             return context.get(type);
         }
+
+        /**
+         * Emits an effect. If the context has an {@link ContextType#EFFECT_QUEUE effect queue} the effect is queued, otherwise it's applied immediately.
+         */
+        public void emit(Effect effect) {
+            EffectQueue.emit(context, effect);
+        }
     }
 }
@@ -3,6 +3,8 @@ package io.github.mattidragon.nodeflow.graph.node;
 import io.github.mattidragon.nodeflow.NodeFlow;
 import io.github.mattidragon.nodeflow.graph.Graph;
 import io.github.mattidragon.nodeflow.graph.data.DataType;
+import io.github.mattidragon.nodeflow.graph.evaluation.EvaluationMode;
+import io.github.mattidragon.nodeflow.graph.evaluation.PrimitiveOp;
 import io.github.mattidragon.nodeflow.graph.node.builtin.NumberNode;
 import io.github.mattidragon.nodeflow.graph.node.builtin.SendNumberNode;
 import io.github.mattidragon.nodeflow.graph.node.builtin.SwitchNode;
@@ -19,14 +21,24 @@ import net.minecraft.util.Identifier;
 
 import java.util.function.Function;
 
-public record NodeType<T extends Node>(Function<Graph, T> generator) {
+/**
+ * @param generator Creates new nodes of this type for a graph.
+ * @param pure Whether nodes of this type always produce the same outputs for the same inputs and configuration, without using any context or having side effects.
+ *             Pure nodes may be evaluated ahead of time, so don't mark types as pure unless you are sure. Their results are kept until the graph changes,
+ *             so nodes with configuration have to call {@link Node#onConfigChanged()} when it does.
+ * @param sideEffects Whether nodes of this type affect anything outside the graph. Other nodes are only evaluated in {@link EvaluationMode#LIVE live mode} if a node with side effects depends on them.
+ *                    Nodes without side effects may also be skipped, reordered or run in parallel, so the constructors without this parameter assume side effects unless the type is pure.
+ * @param idempotent Whether repeating the side effects of a node of this type with the same inputs has no further effect.
+ *                   {@link Graph#evaluateIncremental Incremental evaluation} skips idempotent nodes if their inputs haven't changed.
+ */
+public record NodeType<T extends Node>(Function<Graph, T> generator, boolean pure, boolean sideEffects, boolean idempotent) {
     public static final RegistryKey<Registry<NodeType<?>>> KEY = RegistryKey.ofRegistry(NodeFlow.id("node_type"));
     public static final DefaultedRegistry<NodeType<?>> REGISTRY = FabricRegistryBuilder.createDefaulted(KEY, NodeFlow.id("time")).buildAndRegister();
 
-    public static final NodeType<SendNumberNode> BROADCAST = register(new NodeType<>(SendNumberNode::new), NodeFlow.id("broadcast"));
-    public static final NodeType<TimeNode> TIME = register(new NodeType<>(TimeNode::new), NodeFlow.id("time"));
-    public static final NodeType<SwitchNode> SWITCH = register(new NodeType<>(SwitchNode::new), NodeFlow.id("switch"));
-    public static final NodeType<NumberNode> NUMBER = register(new NodeType<>(NumberNode::new), NodeFlow.id("number"));
+    public static final NodeType<SendNumberNode> BROADCAST = register(new NodeType<>(SendNumberNode::new, false, true), NodeFlow.id("broadcast"));
+    public static final NodeType<TimeNode> TIME = register(new NodeType<>(TimeNode::new, false, false), NodeFlow.id("time"));
+    public static final NodeType<SwitchNode> SWITCH = register(new NodeType<>(SwitchNode::new, true), NodeFlow.id("switch"));
+    public static final NodeType<NumberNode> NUMBER = register(new NodeType<>(NumberNode::new, true), NodeFlow.id("number"));
 
     public static final NodeType<ConstantNode> PI = register(ConstantNode.makeType(DataType.NUMBER.makeValue(Math.PI)), NodeFlow.id("pi"));
     public static final NodeType<ConstantNode> E = register(ConstantNode.makeType(DataType.NUMBER.makeValue(Math.E)), NodeFlow.id("e"));
@@ -37,47 +49,72 @@ public record NodeType<T extends Node>(Function<Graph, T> generator) {
     public static final NodeType<ConstantNode> TRUE = register(ConstantNode.makeType(DataType.BOOLEAN.makeValue(true)), NodeFlow.id("true"));
     public static final NodeType<ConstantNode> FALSE = register(ConstantNode.makeType(DataType.BOOLEAN.makeValue(false)), NodeFlow.id("false"));
 
-    public static final NodeType<UnaryOperationNode<Boolean, Boolean>> NOT = register(UnaryOperationNode.makeType(DataType.BOOLEAN, DataType.BOOLEAN, input -> !input), NodeFlow.id("not"));
-    public static final NodeType<BinaryOperationNode<Boolean, Boolean>> AND = register(BinaryOperationNode.makeType(DataType.BOOLEAN, DataType.BOOLEAN, Boolean::logicalAnd), NodeFlow.id("and"));
-    public static final NodeType<BinaryOperationNode<Boolean, Boolean>> OR = register(BinaryOperationNode.makeType(DataType.BOOLEAN, DataType.BOOLEAN, Boolean::logicalOr), NodeFlow.id("or"));
-    public static final NodeType<BinaryOperationNode<Boolean, Boolean>> XOR = register(BinaryOperationNode.makeType(DataType.BOOLEAN, DataType.BOOLEAN, Boolean::logicalXor), NodeFlow.id("xor"));
-    public static final NodeType<BinaryOperationNode<Boolean, Boolean>> NAND = register(BinaryOperationNode.makeType(DataType.BOOLEAN, DataType.BOOLEAN, (first, second) -> !(first && second)), NodeFlow.id("nand"));
-    public static final NodeType<BinaryOperationNode<Boolean, Boolean>> NOR = register(BinaryOperationNode.makeType(DataType.BOOLEAN, DataType.BOOLEAN, (first, second) -> !(first || second)), NodeFlow.id("nor"));
-    public static final NodeType<BinaryOperationNode<Boolean, Boolean>> BOOL_EQL = register(BinaryOperationNode.makeType(DataType.BOOLEAN, DataType.BOOLEAN, Boolean::equals), NodeFlow.id("bool_eql"));
-
-    public static final NodeType<UnaryOperationNode<Double, Double>> NEGATE = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, input -> -input), NodeFlow.id("negate"));
-    public static final NodeType<BinaryOperationNode<Double, Double>> ADD = register(BinaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Double::sum), NodeFlow.id("add"));
-    public static final NodeType<BinaryOperationNode<Double, Double>> SUBTRACT = register(BinaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, (first, second) -> first - second), NodeFlow.id("subtract"));
-    public static final NodeType<BinaryOperationNode<Double, Double>> MULTIPLY = register(BinaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, (first, second) -> first * second), NodeFlow.id("multiply"));
-    public static final NodeType<BinaryOperationNode<Double, Double>> DIVIDE = register(BinaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, (first, second) -> first / second), NodeFlow.id("divide"));
-    public static final NodeType<BinaryOperationNode<Double, Double>> MODULO = register(BinaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, (first, second) -> first % second), NodeFlow.id("modulo"));
-    public static final NodeType<BinaryOperationNode<Double, Double>> MIN = register(BinaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::min), NodeFlow.id("min"));
-    public static final NodeType<BinaryOperationNode<Double, Double>> MAX = register(BinaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::max), NodeFlow.id("max"));
-    public static final NodeType<BinaryOperationNode<Double, Double>> POW = register(BinaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::pow), NodeFlow.id("pow"));
+    public static final NodeType<UnaryOperationNode<Boolean, Boolean>> NOT = register(UnaryOperationNode.makeBooleanType(PrimitiveOp.NOT), NodeFlow.id("not"));
+    public static final NodeType<BinaryOperationNode<Boolean, Boolean>> AND = register(BinaryOperationNode.makeBooleanType(PrimitiveOp.AND), NodeFlow.id("and"));
+    public static final NodeType<BinaryOperationNode<Boolean, Boolean>> OR = register(BinaryOperationNode.makeBooleanType(PrimitiveOp.OR), NodeFlow.id("or"));
+    public static final NodeType<BinaryOperationNode<Boolean, Boolean>> XOR = register(BinaryOperationNode.makeBooleanType(PrimitiveOp.XOR), NodeFlow.id("xor"));
+    public static final NodeType<BinaryOperationNode<Boolean, Boolean>> NAND = register(BinaryOperationNode.makeBooleanType(PrimitiveOp.NAND), NodeFlow.id("nand"));
+    public static final NodeType<BinaryOperationNode<Boolean, Boolean>> NOR = register(BinaryOperationNode.makeBooleanType(PrimitiveOp.NOR), NodeFlow.id("nor"));
+    public static final NodeType<BinaryOperationNode<Boolean, Boolean>> BOOL_EQL = register(BinaryOperationNode.makeBooleanType(PrimitiveOp.BOOL_EQL), NodeFlow.id("bool_eql"));
+
+    public static final NodeType<UnaryOperationNode<Double, Double>> NEGATE = register(UnaryOperationNode.makeNumberType(PrimitiveOp.NEGATE), NodeFlow.id("negate"));
+    public static final NodeType<BinaryOperationNode<Double, Double>> ADD = register(BinaryOperationNode.makeNumberType(PrimitiveOp.ADD), NodeFlow.id("add"));
+    public static final NodeType<BinaryOperationNode<Double, Double>> SUBTRACT = register(BinaryOperationNode.makeNumberType(PrimitiveOp.SUBTRACT), NodeFlow.id("subtract"));
+    public static final NodeType<BinaryOperationNode<Double, Double>> MULTIPLY = register(BinaryOperationNode.makeNumberType(PrimitiveOp.MULTIPLY), NodeFlow.id("multiply"));
+    public static final NodeType<BinaryOperationNode<Double, Double>> DIVIDE = register(BinaryOperationNode.makeNumberType(PrimitiveOp.DIVIDE), NodeFlow.id("divide"));
+    public static final NodeType<BinaryOperationNode<Double, Double>> MODULO = register(BinaryOperationNode.makeNumberType(PrimitiveOp.MODULO), NodeFlow.id("modulo"));
+    public static final NodeType<BinaryOperationNode<Double, Double>> MIN = register(BinaryOperationNode.makeNumberType(PrimitiveOp.MIN), NodeFlow.id("min"));
+    public static final NodeType<BinaryOperationNode<Double, Double>> MAX = register(BinaryOperationNode.makeNumberType(PrimitiveOp.MAX), NodeFlow.id("max"));
+    public static final NodeType<BinaryOperationNode<Double, Double>> POW = register(BinaryOperationNode.makeNumberType(PrimitiveOp.POW), NodeFlow.id("pow"));
 
     // Advanced math
-    public static final NodeType<UnaryOperationNode<Double, Double>> SIN = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::sin), NodeFlow.id("sin"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> COS = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::cos), NodeFlow.id("cos"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> TAN = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::tan), NodeFlow.id("tan"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> SINH = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::sinh), NodeFlow.id("sinh"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> COSH = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::cosh), NodeFlow.id("cosh"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> TANH = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::tanh), NodeFlow.id("tanh"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> ASIN = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::asin), NodeFlow.id("asin"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> ACOS = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::acos), NodeFlow.id("acos"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> ATAN = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::atan), NodeFlow.id("atan"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> LOG10 = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::log10), NodeFlow.id("log10"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> LOG = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::log), NodeFlow.id("log"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> CBRT = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::cbrt), NodeFlow.id("cbrt"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> SQRT = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::sqrt), NodeFlow.id("sqrt"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> CEIL = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::ceil), NodeFlow.id("ceil"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> FLOOR = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::floor), NodeFlow.id("floor"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> ABS = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::abs), NodeFlow.id("abs"));
-    public static final NodeType<UnaryOperationNode<Double, Double>> SIGNUM = register(UnaryOperationNode.makeType(DataType.NUMBER, DataType.NUMBER, Math::signum), NodeFlow.id("signum"));
-
-    public static final NodeType<BinaryOperationNode<Double, Boolean>> NUM_EQL = register(BinaryOperationNode.makeType(DataType.NUMBER, DataType.BOOLEAN, (first, second) -> first == (double) second), NodeFlow.id("num_eql"));
-    public static final NodeType<BinaryOperationNode<Double, Boolean>> NUM_NEQL = register(BinaryOperationNode.makeType(DataType.NUMBER, DataType.BOOLEAN, (first, second) -> first != (double) second), NodeFlow.id("num_neql"));
-    public static final NodeType<BinaryOperationNode<Double, Boolean>> LESS = register(BinaryOperationNode.makeType(DataType.NUMBER, DataType.BOOLEAN, (first, second) -> first < second), NodeFlow.id("less"));
-    public static final NodeType<BinaryOperationNode<Double, Boolean>> GREATER = register(BinaryOperationNode.makeType(DataType.NUMBER, DataType.BOOLEAN, (first, second) -> first > second), NodeFlow.id("greater"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> SIN = register(UnaryOperationNode.makeNumberType(PrimitiveOp.SIN), NodeFlow.id("sin"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> COS = register(UnaryOperationNode.makeNumberType(PrimitiveOp.COS), NodeFlow.id("cos"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> TAN = register(UnaryOperationNode.makeNumberType(PrimitiveOp.TAN), NodeFlow.id("tan"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> SINH = register(UnaryOperationNode.makeNumberType(PrimitiveOp.SINH), NodeFlow.id("sinh"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> COSH = register(UnaryOperationNode.makeNumberType(PrimitiveOp.COSH), NodeFlow.id("cosh"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> TANH = register(UnaryOperationNode.makeNumberType(PrimitiveOp.TANH), NodeFlow.id("tanh"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> ASIN = register(UnaryOperationNode.makeNumberType(PrimitiveOp.ASIN), NodeFlow.id("asin"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> ACOS = register(UnaryOperationNode.makeNumberType(PrimitiveOp.ACOS), NodeFlow.id("acos"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> ATAN = register(UnaryOperationNode.makeNumberType(PrimitiveOp.ATAN), NodeFlow.id("atan"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> LOG10 = register(UnaryOperationNode.makeNumberType(PrimitiveOp.LOG10), NodeFlow.id("log10"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> LOG = register(UnaryOperationNode.makeNumberType(PrimitiveOp.LOG), NodeFlow.id("log"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> CBRT = register(UnaryOperationNode.makeNumberType(PrimitiveOp.CBRT), NodeFlow.id("cbrt"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> SQRT = register(UnaryOperationNode.makeNumberType(PrimitiveOp.SQRT), NodeFlow.id("sqrt"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> CEIL = register(UnaryOperationNode.makeNumberType(PrimitiveOp.CEIL), NodeFlow.id("ceil"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> FLOOR = register(UnaryOperationNode.makeNumberType(PrimitiveOp.FLOOR), NodeFlow.id("floor"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> ABS = register(UnaryOperationNode.makeNumberType(PrimitiveOp.ABS), NodeFlow.id("abs"));
+    public static final NodeType<UnaryOperationNode<Double, Double>> SIGNUM = register(UnaryOperationNode.makeNumberType(PrimitiveOp.SIGNUM), NodeFlow.id("signum"));
+
+    public static final NodeType<BinaryOperationNode<Double, Boolean>> NUM_EQL = register(BinaryOperationNode.makeComparisonType(PrimitiveOp.NUM_EQL), NodeFlow.id("num_eql"));
+    public static final NodeType<BinaryOperationNode<Double, Boolean>> NUM_NEQL = register(BinaryOperationNode.makeComparisonType(PrimitiveOp.NUM_NEQL), NodeFlow.id("num_neql"));
+    public static final NodeType<BinaryOperationNode<Double, Boolean>> LESS = register(BinaryOperationNode.makeComparisonType(PrimitiveOp.LESS), NodeFlow.id("less"));
+    public static final NodeType<BinaryOperationNode<Double, Boolean>> GREATER = register(BinaryOperationNode.makeComparisonType(PrimitiveOp.GREATER), NodeFlow.id("greater"));
+
+    public NodeType {
+        if (pure && sideEffects)
+            throw new IllegalArgumentException("Node types with side effects can't be pure");
+        if (idempotent && !sideEffects)
+            throw new IllegalArgumentException("Only node types with side effects can be idempotent");
+    }
+
+    public NodeType(Function<Graph, T> generator, boolean pure, boolean sideEffects) {
+        this(generator, pure, sideEffects, false);
+    }
+
+    /**
+     * Creates a type that has side effects unless it's pure.
+     */
+    public NodeType(Function<Graph, T> generator, boolean pure) {
+        this(generator, pure, !pure, false);
+    }
+
+    /**
+     * Creates a type that isn't pure and is assumed to have side effects.
+     */
+    public NodeType(Function<Graph, T> generator) {
+        this(generator, false, true, false);
+    }
 
     public static void register() {}
 
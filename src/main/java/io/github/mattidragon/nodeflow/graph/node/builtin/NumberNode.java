@@ -5,6 +5,7 @@ import io.github.mattidragon.nodeflow.graph.Connector;
 import io.github.mattidragon.nodeflow.graph.Graph;
 import io.github.mattidragon.nodeflow.graph.data.DataType;
 import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.evaluation.OutputSink;
 import io.github.mattidragon.nodeflow.graph.node.Node;
 import io.github.mattidragon.nodeflow.graph.node.NodeType;
 import net.minecraft.nbt.NbtCompound;
@@ -42,7 +43,13 @@ public class NumberNode extends Node {
 
     @Override
     protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
-        return Either.left(new DataValue<?>[]{DataType.NUMBER.makeValue(Double.valueOf(value))});
+        return processWithSink(inputs, context);
+    }
+
+    @Override
+    public boolean process(DataValue<?>[] inputs, OutputSink sink) {
+        sink.set(0, DataType.NUMBER.makeValue(Double.valueOf(value)));
+        return true;
     }
 
     public boolean hasConfig() {
@@ -55,6 +62,7 @@ public class NumberNode extends Node {
 
     public void setValue(String value) {
         this.value = value;
+        onConfigChanged();
     }
 
     @Override
@@ -6,9 +6,14 @@ import io.github.mattidragon.nodeflow.graph.Graph;
 import io.github.mattidragon.nodeflow.graph.context.ContextType;
 import io.github.mattidragon.nodeflow.graph.data.DataType;
 import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.effect.Effect;
+import io.github.mattidragon.nodeflow.graph.effect.MessageBatcher;
+import io.github.mattidragon.nodeflow.graph.evaluation.OutputSink;
 import io.github.mattidragon.nodeflow.graph.node.Node;
 import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import net.minecraft.server.world.ServerWorld;
 import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
 
 import java.util.List;
 
@@ -31,9 +36,22 @@ public class SendNumberNode extends Node {
 
     @Override
     protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
-        context.get(ContextType.SERVER_WORLD).getPlayers(player -> context.get(ContextType.BLOCK_POS).getSquaredDistance(player.getPos()) < 16 * 16).forEach(player ->
-                player.sendMessage(Text.translatable("node.nodeflow.broadcast.message", inputs[0].getAs(DataType.NUMBER))));
+        return processWithSink(inputs, context);
+    }
+
+    @Override
+    public boolean process(DataValue<?>[] inputs, OutputSink sink) {
+        sink.emit(new BroadcastEffect(sink.get(ContextType.SERVER_WORLD), sink.get(ContextType.BLOCK_POS), inputs[0].getAs(DataType.NUMBER)));
+        return true;
+    }
 
-        return Either.left(new DataValue<?>[0]);
+    /**
+     * Sends a number to all players within 16 blocks of a position at the end of the tick.
+     */
+    public record BroadcastEffect(ServerWorld world, BlockPos pos, double value) implements Effect {
+        @Override
+        public void apply() {
+            MessageBatcher.getInstance().broadcast(world, pos, 16, Text.translatable("node.nodeflow.broadcast.message", value));
+        }
     }
 }
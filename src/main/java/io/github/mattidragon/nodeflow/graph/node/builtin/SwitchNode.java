@@ -5,13 +5,15 @@ import io.github.mattidragon.nodeflow.graph.Connector;
 import io.github.mattidragon.nodeflow.graph.Graph;
 import io.github.mattidragon.nodeflow.graph.data.DataType;
 import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.evaluation.ConditionalNode;
+import io.github.mattidragon.nodeflow.graph.evaluation.OutputSink;
 import io.github.mattidragon.nodeflow.graph.node.NodeType;
 import io.github.mattidragon.nodeflow.graph.node.builtin.base.TypedNode;
 import net.minecraft.text.Text;
 
 import java.util.List;
 
-public class SwitchNode extends TypedNode {
+public class SwitchNode extends TypedNode implements ConditionalNode {
     public SwitchNode(Graph graph) {
         super(NodeType.SWITCH, List.of(), graph);
         var allowedDataTypes = graph.env.allowedDataTypes();
@@ -34,6 +36,22 @@ public class SwitchNode extends TypedNode {
 
     @Override
     protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
-        return Either.left(new DataValue<?>[]{ inputs[0].getAs(DataType.BOOLEAN) ? inputs[1] : inputs[2] });
+        return processWithSink(inputs, context);
+    }
+
+    @Override
+    public boolean process(DataValue<?>[] inputs, OutputSink sink) {
+        sink.set(0, inputs[0].getAs(DataType.BOOLEAN) ? inputs[1] : inputs[2]);
+        return true;
+    }
+
+    @Override
+    public boolean isConditionalInput(int input) {
+        return input != 0;
+    }
+
+    @Override
+    public boolean isInputNeeded(int input, DataValue<?>[] inputs) {
+        return inputs[0].getAs(DataType.BOOLEAN) == (input == 1);
     }
 }
@@ -6,6 +6,7 @@ import io.github.mattidragon.nodeflow.graph.Graph;
 import io.github.mattidragon.nodeflow.graph.context.ContextType;
 import io.github.mattidragon.nodeflow.graph.data.DataType;
 import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.evaluation.OutputSink;
 import io.github.mattidragon.nodeflow.graph.node.Node;
 import io.github.mattidragon.nodeflow.graph.node.NodeType;
 import net.minecraft.text.Text;
@@ -36,11 +37,19 @@ public class TimeNode extends Node {
 
     @Override
     protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
-        World world = context.get(ContextType.WORLD);
-        return Either.left(new DataValue<?>[]{
-                DataType.NUMBER.makeValue((double) world.getTime()),
-                DataType.NUMBER.makeValue((double) world.getTimeOfDay() % 24000L),
-                DataType.NUMBER.makeValue((double) world.getTime() / 24000L)
-        });
+        return processWithSink(inputs, context);
+    }
+
+    @Override
+    public boolean process(DataValue<?>[] inputs, OutputSink sink) {
+        World world = sink.get(ContextType.WORLD);
+        // Usually only one of the outputs is connected
+        if (sink.isOutputUsed(0))
+            sink.set(0, DataType.NUMBER.makeValue((double) world.getTime()));
+        if (sink.isOutputUsed(1))
+            sink.set(1, DataType.NUMBER.makeValue((double) world.getTimeOfDay() % 24000L));
+        if (sink.isOutputUsed(2))
+            sink.set(2, DataType.NUMBER.makeValue((double) world.getTime() / 24000L));
+        return true;
     }
 }
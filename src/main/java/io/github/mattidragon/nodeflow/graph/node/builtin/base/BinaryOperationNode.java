@@ -5,31 +5,195 @@ import io.github.mattidragon.nodeflow.graph.Connector;
 import io.github.mattidragon.nodeflow.graph.Graph;
 import io.github.mattidragon.nodeflow.graph.data.DataType;
 import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.evaluation.ColumnFrame;
+import io.github.mattidragon.nodeflow.graph.evaluation.ColumnKernel;
+import io.github.mattidragon.nodeflow.graph.evaluation.ColumnKernels;
+import io.github.mattidragon.nodeflow.graph.evaluation.OutputSink;
+import io.github.mattidragon.nodeflow.graph.evaluation.PrimitiveConditionalNode;
+import io.github.mattidragon.nodeflow.graph.evaluation.PrimitiveFrame;
+import io.github.mattidragon.nodeflow.graph.evaluation.PrimitiveOp;
 import io.github.mattidragon.nodeflow.graph.node.Node;
 import io.github.mattidragon.nodeflow.graph.node.NodeType;
 import net.minecraft.text.Text;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.DoubleBinaryOperator;
 
-public class BinaryOperationNode<T, R> extends Node {
+public class BinaryOperationNode<T, R> extends Node implements PrimitiveConditionalNode {
     private final DataType<T> inputType;
     private final DataType<R> resultType;
     private final BiFunction<T, T, R> function;
+    @Nullable
+    private final Consumer<PrimitiveFrame> primitiveFunction;
+    @Nullable
+    private final ColumnKernel columnFunction;
+    // The value of the first input that decides the result on its own, or null if the second input is always needed
+    @Nullable
+    private final T decidingValue;
+    // The result when the first input has the deciding value
+    @Nullable
+    private final R decidedResult;
+    @Nullable
+    private final PrimitiveOp op;
 
     public BinaryOperationNode(NodeType<BinaryOperationNode<T, R>> type, Graph graph, DataType<T> inputType, DataType<R> resultType, BiFunction<T, T, R> function) {
+        this(type, graph, inputType, resultType, function, null, null, null, null, null);
+    }
+
+    private BinaryOperationNode(NodeType<BinaryOperationNode<T, R>> type, Graph graph, DataType<T> inputType, DataType<R> resultType, BiFunction<T, T, R> function, @Nullable Consumer<PrimitiveFrame> primitiveFunction, @Nullable ColumnKernel columnFunction, @Nullable T decidingValue, @Nullable R decidedResult, @Nullable PrimitiveOp op) {
         super(type, List.of(), graph);
         this.inputType = inputType;
         this.resultType = resultType;
         this.function = function;
+        this.primitiveFunction = primitiveFunction;
+        this.columnFunction = columnFunction;
+        this.decidingValue = decidingValue;
+        this.decidedResult = decidedResult;
+        this.op = op;
     }
 
     public static <T, R> NodeType<BinaryOperationNode<T, R>> makeType(DataType<T> inputType, DataType<R> resultType, BiFunction<T, T, R> function) {
+        return makeType(inputType, resultType, function, null, null, null, null, null, false);
+    }
+
+    /**
+     * Makes a type for an operation on two numbers that is evaluated without boxing. The operator has to be pure.
+     */
+    public static NodeType<BinaryOperationNode<Double, Double>> makeNumberType(DoubleBinaryOperator operator) {
+        return makeNumberType(operator, null);
+    }
+
+    /**
+     * Makes a type for a built-in binary number operation.
+     */
+    public static NodeType<BinaryOperationNode<Double, Double>> makeNumberType(PrimitiveOp op) {
+        if (op.getShape() != PrimitiveOp.Shape.NUMBER_BINARY)
+            throw new IllegalArgumentException(op + " isn't a binary number operation");
+        return makeNumberType(op::applyNumber, op);
+    }
+
+    private static NodeType<BinaryOperationNode<Double, Double>> makeNumberType(DoubleBinaryOperator operator, @Nullable PrimitiveOp op) {
+        return makeType(DataType.NUMBER, DataType.NUMBER, operator::applyAsDouble,
+                frame -> frame.setNumber(0, operator.applyAsDouble(frame.getNumber(0), frame.getNumber(1))),
+                numberColumns(operator), null, null, op, true);
+    }
+
+    /**
+     * Makes the loop that number types use to process a batch one row at a time, when there is no {@link ColumnKernels column kernel} for them.
+     * Public so that the kernels can be benchmarked against it.
+     */
+    public static ColumnKernel numberColumns(DoubleBinaryOperator operator) {
+        return frame -> {
+            var first = frame.getNumbers(0);
+            var second = frame.getNumbers(1);
+            var result = frame.getNumberOutput(0);
+            for (int i = 0; i < frame.length(); i++) {
+                result[i] = operator.applyAsDouble(first[i], second[i]);
+            }
+        };
+    }
+
+    /**
+     * Makes a type for a comparison of two numbers that is evaluated without boxing. The comparison has to be pure.
+     */
+    public static NodeType<BinaryOperationNode<Double, Boolean>> makeComparisonType(DoubleComparison comparison) {
+        return makeComparisonType(comparison, null);
+    }
+
+    /**
+     * Makes a type for a built-in comparison.
+     */
+    public static NodeType<BinaryOperationNode<Double, Boolean>> makeComparisonType(PrimitiveOp op) {
+        if (op.getShape() != PrimitiveOp.Shape.COMPARISON)
+            throw new IllegalArgumentException(op + " isn't a comparison");
+        return makeComparisonType(op::compare, op);
+    }
+
+    private static NodeType<BinaryOperationNode<Double, Boolean>> makeComparisonType(DoubleComparison comparison, @Nullable PrimitiveOp op) {
+        return makeType(DataType.NUMBER, DataType.BOOLEAN, comparison::test,
+                frame -> frame.setBoolean(0, comparison.test(frame.getNumber(0), frame.getNumber(1))),
+                comparisonColumns(comparison), null, null, op, true);
+    }
+
+    /**
+     * Makes the loop that comparison types use to process a batch one row at a time, when there is no {@link ColumnKernels column kernel} for them.
+     * Public so that the kernels can be benchmarked against it.
+     */
+    public static ColumnKernel comparisonColumns(DoubleComparison comparison) {
+        return frame -> {
+            var first = frame.getNumbers(0);
+            var second = frame.getNumbers(1);
+            var result = frame.getBooleanOutput(0);
+            for (int i = 0; i < frame.length(); i++) {
+                result[i] = comparison.test(first[i], second[i]);
+            }
+        };
+    }
+
+    /**
+     * Makes a type for an operation on two booleans that is evaluated without boxing. The operator has to be pure.
+     */
+    public static NodeType<BinaryOperationNode<Boolean, Boolean>> makeBooleanType(BooleanOperator operator) {
+        return makeBooleanType(operator, null);
+    }
+
+    /**
+     * Makes a type for a built-in binary boolean operation. Short circuits if the op does.
+     */
+    public static NodeType<BinaryOperationNode<Boolean, Boolean>> makeBooleanType(PrimitiveOp op) {
+        if (op.getShape() != PrimitiveOp.Shape.BOOLEAN_BINARY)
+            throw new IllegalArgumentException(op + " isn't a binary boolean operation");
+        if (op.isShortCircuit())
+            return makeShortCircuitType(op::applyBoolean, op.getDecidingValue(), op.getDecidedResult(), op);
+        return makeBooleanType(op::applyBoolean, op);
+    }
+
+    private static NodeType<BinaryOperationNode<Boolean, Boolean>> makeBooleanType(BooleanOperator operator, @Nullable PrimitiveOp op) {
+        return makeType(DataType.BOOLEAN, DataType.BOOLEAN, operator::apply,
+                frame -> frame.setBoolean(0, operator.apply(frame.getBoolean(0), frame.getBoolean(1))),
+                frame -> {
+                    var first = frame.getBooleans(0);
+                    var second = frame.getBooleans(1);
+                    var result = frame.getBooleanOutput(0);
+                    for (int i = 0; i < frame.length(); i++) {
+                        result[i] = operator.apply(first[i], second[i]);
+                    }
+                }, null, null, op, true);
+    }
+
+    /**
+     * Makes a type for an operation on two booleans that skips evaluating its second input when the first one has the deciding value, like {@code &&} and {@code ||}.
+     * The operator has to be pure. It's only applied when the second input is needed, otherwise the result is {@code decidedResult}.
+     */
+    public static NodeType<BinaryOperationNode<Boolean, Boolean>> makeShortCircuitType(BooleanOperator operator, boolean decidingValue, boolean decidedResult) {
+        return makeShortCircuitType(operator, decidingValue, decidedResult, null);
+    }
+
+    private static NodeType<BinaryOperationNode<Boolean, Boolean>> makeShortCircuitType(BooleanOperator operator, boolean decidingValue, boolean decidedResult, @Nullable PrimitiveOp op) {
+        return makeType(DataType.BOOLEAN, DataType.BOOLEAN, operator::apply,
+                frame -> {
+                    var first = frame.getBoolean(0);
+                    frame.setBoolean(0, first == decidingValue ? decidedResult : operator.apply(first, frame.getBoolean(1)));
+                },
+                frame -> {
+                    var first = frame.getBooleans(0);
+                    var second = frame.getBooleans(1);
+                    var result = frame.getBooleanOutput(0);
+                    for (int i = 0; i < frame.length(); i++) {
+                        result[i] = first[i] == decidingValue ? decidedResult : operator.apply(first[i], second[i]);
+                    }
+                }, decidingValue, decidedResult, op, true);
+    }
+
+    private static <T, R> NodeType<BinaryOperationNode<T, R>> makeType(DataType<T> inputType, DataType<R> resultType, BiFunction<T, T, R> function, @Nullable Consumer<PrimitiveFrame> primitiveFunction, @Nullable ColumnKernel columnFunction, @Nullable T decidingValue, @Nullable R decidedResult, @Nullable PrimitiveOp op, boolean pure) {
         // avoid reference errors with holder object (can't use array due to generics)
         var type = new Object() {
             NodeType<BinaryOperationNode<T, R>> type;
         };
-        return type.type = new NodeType<>(graph -> new BinaryOperationNode<>(type.type, graph, inputType, resultType, function));
+        return type.type = new NodeType<>(graph -> new BinaryOperationNode<>(type.type, graph, inputType, resultType, function, primitiveFunction, columnFunction, decidingValue, decidedResult, op), pure);
     }
 
     @Override
@@ -47,6 +211,75 @@ public class BinaryOperationNode<T, R> extends Node {
 
     @Override
     protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
-        return Either.<DataValue<?>[], Text>left(new DataValue[]{resultType.makeValue(function.apply(inputs[0].getAs(inputType), inputs[1].getAs(inputType)))});
+        return processWithSink(inputs, context);
+    }
+
+    @Override
+    public boolean process(DataValue<?>[] inputs, OutputSink sink) {
+        var first = inputs[0].getAs(inputType);
+        // The second input is missing if the first one decided the result
+        if (decidingValue != null && decidingValue.equals(first)) {
+            sink.set(0, resultType.makeValue(decidedResult));
+        } else {
+            sink.set(0, resultType.makeValue(function.apply(first, inputs[1].getAs(inputType))));
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isPrimitive() {
+        return primitiveFunction != null;
+    }
+
+    @Override
+    public void processPrimitive(PrimitiveFrame frame) {
+        if (primitiveFunction == null)
+            throw new IllegalStateException("Node doesn't support primitive evaluation");
+        primitiveFunction.accept(frame);
+    }
+
+    @Override
+    @Nullable
+    public PrimitiveOp getOp() {
+        return op;
+    }
+
+    @Override
+    public void processColumns(ColumnFrame frame) {
+        if (columnFunction == null) {
+            PrimitiveConditionalNode.super.processColumns(frame);
+            return;
+        }
+        columnFunction.apply(frame);
+    }
+
+    @Override
+    public boolean isConditional() {
+        return decidingValue != null;
+    }
+
+    @Override
+    public boolean isConditionalInput(int input) {
+        return decidingValue != null && input == 1;
+    }
+
+    @Override
+    public boolean isInputNeeded(int input, DataValue<?>[] inputs) {
+        return !inputs[0].getAs(inputType).equals(decidingValue);
+    }
+
+    @Override
+    public boolean isInputNeeded(int input, PrimitiveFrame frame) {
+        return !decidingValue.equals(frame.getBoolean(0));
+    }
+
+    @FunctionalInterface
+    public interface DoubleComparison {
+        boolean test(double first, double second);
+    }
+
+    @FunctionalInterface
+    public interface BooleanOperator {
+        boolean apply(boolean first, boolean second);
     }
 }
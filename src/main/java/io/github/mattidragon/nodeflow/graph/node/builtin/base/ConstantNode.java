@@ -4,6 +4,7 @@ import com.mojang.datafixers.util.Either;
 import io.github.mattidragon.nodeflow.graph.Connector;
 import io.github.mattidragon.nodeflow.graph.Graph;
 import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.evaluation.OutputSink;
 import io.github.mattidragon.nodeflow.graph.node.Node;
 import io.github.mattidragon.nodeflow.graph.node.NodeType;
 import net.minecraft.text.Text;
@@ -23,7 +24,7 @@ public class ConstantNode extends Node {
         var type = new Object() {
             NodeType<ConstantNode> type;
         };
-        return type.type = new NodeType<>(graph -> new ConstantNode(type.type, graph, value));
+        return type.type = new NodeType<>(graph -> new ConstantNode(type.type, graph, value), true);
     }
 
     @Override
@@ -38,6 +39,12 @@ public class ConstantNode extends Node {
 
     @Override
     protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
-        return Either.<DataValue<?>[], Text>left(new DataValue[]{value});
+        return processWithSink(inputs, context);
+    }
+
+    @Override
+    public boolean process(DataValue<?>[] inputs, OutputSink sink) {
+        sink.set(0, value);
+        return true;
     }
 }
@@ -23,6 +23,7 @@ public abstract class TypedNode extends Node {
 
     public void setType(DataType<?> type) {
         this.type = type;
+        onConfigChanged();
     }
 
     @Override
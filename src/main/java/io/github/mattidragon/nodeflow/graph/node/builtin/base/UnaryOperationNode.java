@@ -5,31 +5,122 @@ import io.github.mattidragon.nodeflow.graph.Connector;
 import io.github.mattidragon.nodeflow.graph.Graph;
 import io.github.mattidragon.nodeflow.graph.data.DataType;
 import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.evaluation.ColumnFrame;
+import io.github.mattidragon.nodeflow.graph.evaluation.ColumnKernel;
+import io.github.mattidragon.nodeflow.graph.evaluation.ColumnKernels;
+import io.github.mattidragon.nodeflow.graph.evaluation.OutputSink;
+import io.github.mattidragon.nodeflow.graph.evaluation.PrimitiveFrame;
+import io.github.mattidragon.nodeflow.graph.evaluation.PrimitiveNode;
+import io.github.mattidragon.nodeflow.graph.evaluation.PrimitiveOp;
 import io.github.mattidragon.nodeflow.graph.node.Node;
 import io.github.mattidragon.nodeflow.graph.node.NodeType;
 import net.minecraft.text.Text;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
 
-public class UnaryOperationNode<T, R> extends Node {
+public class UnaryOperationNode<T, R> extends Node implements PrimitiveNode {
     private final DataType<T> inputType;
     private final DataType<R> resultType;
     private final Function<T, R> function;
+    @Nullable
+    private final Consumer<PrimitiveFrame> primitiveFunction;
+    @Nullable
+    private final ColumnKernel columnFunction;
+    @Nullable
+    private final PrimitiveOp op;
 
     public UnaryOperationNode(NodeType<UnaryOperationNode<T, R>> type, Graph graph, DataType<T> inputType, DataType<R> resultType, Function<T, R> function) {
+        this(type, graph, inputType, resultType, function, null, null, null);
+    }
+
+    private UnaryOperationNode(NodeType<UnaryOperationNode<T, R>> type, Graph graph, DataType<T> inputType, DataType<R> resultType, Function<T, R> function, @Nullable Consumer<PrimitiveFrame> primitiveFunction, @Nullable ColumnKernel columnFunction, @Nullable PrimitiveOp op) {
         super(type, List.of(), graph);
         this.inputType = inputType;
         this.resultType = resultType;
         this.function = function;
+        this.primitiveFunction = primitiveFunction;
+        this.columnFunction = columnFunction;
+        this.op = op;
     }
 
     public static <T, R> NodeType<UnaryOperationNode<T, R>> makeType(DataType<T> inputType, DataType<R> resultType, Function<T, R> function) {
+        return makeType(inputType, resultType, function, null, null, null, false);
+    }
+
+    /**
+     * Makes a type for an operation on a number that is evaluated without boxing. The operator has to be pure.
+     */
+    public static NodeType<UnaryOperationNode<Double, Double>> makeNumberType(DoubleUnaryOperator operator) {
+        return makeNumberType(operator, null);
+    }
+
+    /**
+     * Makes a type for a built-in unary number operation.
+     */
+    public static NodeType<UnaryOperationNode<Double, Double>> makeNumberType(PrimitiveOp op) {
+        if (op.getShape() != PrimitiveOp.Shape.NUMBER_UNARY)
+            throw new IllegalArgumentException(op + " isn't a unary number operation");
+        return makeNumberType(op::applyNumber, op);
+    }
+
+    private static NodeType<UnaryOperationNode<Double, Double>> makeNumberType(DoubleUnaryOperator operator, @Nullable PrimitiveOp op) {
+        return makeType(DataType.NUMBER, DataType.NUMBER, operator::applyAsDouble,
+                frame -> frame.setNumber(0, operator.applyAsDouble(frame.getNumber(0))),
+                numberColumns(operator), op, true);
+    }
+
+    /**
+     * Makes the loop that number types use to process a batch one row at a time, when there is no {@link ColumnKernels column kernel} for them.
+     * Public so that the kernels can be benchmarked against it.
+     */
+    public static ColumnKernel numberColumns(DoubleUnaryOperator operator) {
+        return frame -> {
+            var input = frame.getNumbers(0);
+            var result = frame.getNumberOutput(0);
+            for (int i = 0; i < frame.length(); i++) {
+                result[i] = operator.applyAsDouble(input[i]);
+            }
+        };
+    }
+
+    /**
+     * Makes a type for an operation on a boolean that is evaluated without boxing. The operator has to be pure.
+     */
+    public static NodeType<UnaryOperationNode<Boolean, Boolean>> makeBooleanType(BooleanOperator operator) {
+        return makeBooleanType(operator, null);
+    }
+
+    /**
+     * Makes a type for a built-in unary boolean operation.
+     */
+    public static NodeType<UnaryOperationNode<Boolean, Boolean>> makeBooleanType(PrimitiveOp op) {
+        if (op.getShape() != PrimitiveOp.Shape.BOOLEAN_UNARY)
+            throw new IllegalArgumentException(op + " isn't a unary boolean operation");
+        return makeBooleanType(op::applyBoolean, op);
+    }
+
+    private static NodeType<UnaryOperationNode<Boolean, Boolean>> makeBooleanType(BooleanOperator operator, @Nullable PrimitiveOp op) {
+        return makeType(DataType.BOOLEAN, DataType.BOOLEAN, operator::apply,
+                frame -> frame.setBoolean(0, operator.apply(frame.getBoolean(0))),
+                frame -> {
+                    var input = frame.getBooleans(0);
+                    var result = frame.getBooleanOutput(0);
+                    for (int i = 0; i < frame.length(); i++) {
+                        result[i] = operator.apply(input[i]);
+                    }
+                }, op, true);
+    }
+
+    private static <T, R> NodeType<UnaryOperationNode<T, R>> makeType(DataType<T> inputType, DataType<R> resultType, Function<T, R> function, @Nullable Consumer<PrimitiveFrame> primitiveFunction, @Nullable ColumnKernel columnFunction, @Nullable PrimitiveOp op, boolean pure) {
         // avoid reference errors with holder object (can't use array due to generics)
         var type = new Object() {
             NodeType<UnaryOperationNode<T, R>> type;
         };
-        return type.type = new NodeType<>(graph -> new UnaryOperationNode<>(type.type, graph, inputType, resultType, function));
+        return type.type = new NodeType<>(graph -> new UnaryOperationNode<>(type.type, graph, inputType, resultType, function, primitiveFunction, columnFunction, op), pure);
     }
 
     @Override
@@ -44,6 +135,44 @@ public class UnaryOperationNode<T, R> extends Node {
 
     @Override
     protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
-        return Either.<DataValue<?>[], Text>left(new DataValue[]{resultType.makeValue(function.apply(inputs[0].getAs(inputType)))});
+        return processWithSink(inputs, context);
+    }
+
+    @Override
+    public boolean process(DataValue<?>[] inputs, OutputSink sink) {
+        sink.set(0, resultType.makeValue(function.apply(inputs[0].getAs(inputType))));
+        return true;
+    }
+
+    @Override
+    public boolean isPrimitive() {
+        return primitiveFunction != null;
+    }
+
+    @Override
+    public void processPrimitive(PrimitiveFrame frame) {
+        if (primitiveFunction == null)
+            throw new IllegalStateException("Node doesn't support primitive evaluation");
+        primitiveFunction.accept(frame);
+    }
+
+    @Override
+    @Nullable
+    public PrimitiveOp getOp() {
+        return op;
+    }
+
+    @Override
+    public void processColumns(ColumnFrame frame) {
+        if (columnFunction == null) {
+            PrimitiveNode.super.processColumns(frame);
+            return;
+        }
+        columnFunction.apply(frame);
+    }
+
+    @FunctionalInterface
+    public interface BooleanOperator {
+        boolean apply(boolean input);
     }
 }
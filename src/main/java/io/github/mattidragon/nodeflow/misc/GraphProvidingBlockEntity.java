@@ -33,6 +33,14 @@ public abstract class GraphProvidingBlockEntity extends BlockEntity implements G
         buf.writeNbt(graphNbt);
     }
 
+    @Override
+    public void markRemoved() {
+        super.markRemoved();
+        // Also called when the chunk unloads, so release what the graph was optimized into
+        if (world != null)
+            getGraph(world, pos).releaseExecutionPlan();
+    }
+
     @Nullable
     @Override
     public ScreenHandler createMenu(int syncId, PlayerInventory inv, PlayerEntity player) {
@@ -0,0 +1,135 @@
+package io.github.mattidragon.nodeflow.scheduler;
+
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.misc.GraphProvider;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Evaluates graphs at regular intervals on the server thread, so that mods don't have to evaluate them all in the same tick themselves.
+ * Graphs with the same interval are spread out over the ticks of the interval. The time spent on graphs each tick is limited by a budget,
+ * and graphs that don't fit into it are carried over to the next tick, ahead of graphs that become due then.
+ * <p>
+ * The scheduler is ticked at the end of every server tick and cleared when the server stops.
+ */
+public final class GraphScheduler {
+    public static final double DEFAULT_BUDGET_MILLIS = 5;
+    private static final GraphScheduler INSTANCE = new GraphScheduler();
+
+    private final List<ScheduledGraph> graphs = new ArrayList<>();
+    private final ArrayDeque<ScheduledGraph> pending = new ArrayDeque<>();
+    // How many graphs use each phase of each interval
+    private final Map<Integer, int[]> phaseLoads = new HashMap<>();
+    private long budgetNanos = (long) (DEFAULT_BUDGET_MILLIS * 1_000_000);
+    private long tick = 0;
+
+    private GraphScheduler() {
+    }
+
+    public static GraphScheduler getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Schedules a graph to be evaluated regularly. The graph is fetched from the provider each time, so it can be replaced without scheduling it again.
+     * If the provider is a block entity, the graph is unscheduled automatically once the block entity is removed.
+     * @param interval How many ticks to wait between evaluations. The graph can be delayed if there isn't enough time to evaluate all graphs.
+     * @param context Creates the context for each evaluation.
+     */
+    public ScheduledGraph schedule(GraphProvider provider, World world, BlockPos pos, int interval, Supplier<Context> context) {
+        if (interval < 1)
+            throw new IllegalArgumentException("Interval has to be positive");
+
+        // Use the least used phase, so that graphs are spread out evenly
+        var loads = phaseLoads.computeIfAbsent(interval, key -> new int[interval]);
+        var phase = 0;
+        for (int i = 1; i < interval; i++) {
+            if (loads[i] < loads[phase])
+                phase = i;
+        }
+        loads[phase]++;
+
+        var graph = new ScheduledGraph(this, provider, world, pos, interval, phase, context);
+        graphs.add(graph);
+        return graph;
+    }
+
+    void unschedule(ScheduledGraph graph) {
+        if (!graphs.remove(graph)) return;
+        pending.remove(graph);
+        phaseLoads.get(graph.interval)[graph.phase]--;
+    }
+
+    public double getBudgetMillis() {
+        return budgetNanos / 1_000_000.0;
+    }
+
+    /**
+     * Sets how much time graphs can take each tick. At least one graph is evaluated each tick even if it takes longer than the budget.
+     */
+    public void setBudgetMillis(double budget) {
+        if (budget < 0)
+            throw new IllegalArgumentException("Budget can't be negative");
+        budgetNanos = (long) (budget * 1_000_000);
+    }
+
+    /**
+     * Returns how many graphs are waiting to be evaluated.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    long getTick() {
+        return tick;
+    }
+
+    /**
+     * Evaluates the graphs that are due, within the budget. Called automatically at the end of each server tick.
+     */
+    public void tick() {
+        tick++;
+        for (var graph : pending) {
+            graph.carriedOverTicks++;
+        }
+        for (var graph : graphs) {
+            if ((tick - graph.phase) % graph.interval != 0) continue;
+            if (graph.pending) {
+                // Still waiting from an earlier interval, so this run is lost
+                graph.skippedRuns++;
+                continue;
+            }
+            graph.pending = true;
+            graph.dueTick = tick;
+            pending.add(graph);
+        }
+
+        var start = System.nanoTime();
+        do {
+            var graph = pending.poll();
+            if (graph == null) break;
+            graph.pending = false;
+            graph.run();
+        } while (System.nanoTime() - start < budgetNanos);
+    }
+
+    /**
+     * Unschedules all graphs. Called automatically when the server stops.
+     */
+    public void clear() {
+        for (var graph : graphs) {
+            graph.cancelled = true;
+        }
+        graphs.clear();
+        pending.clear();
+        phaseLoads.clear();
+        tick = 0;
+    }
+}
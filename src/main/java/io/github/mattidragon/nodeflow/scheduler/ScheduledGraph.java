@@ -0,0 +1,138 @@
+package io.github.mattidragon.nodeflow.scheduler;
+
+import io.github.mattidragon.nodeflow.NodeFlow;
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.misc.EvaluationError;
+import io.github.mattidragon.nodeflow.misc.GraphProvider;
+import net.minecraft.block.entity.BlockEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * A graph scheduled by the {@link GraphScheduler}. Keeps track of the results of the last evaluation and how much the graph has been delayed.
+ * <p>
+ * If a run throws, for example because the provider has no graph or the context can't be created, the failure is logged and the graph backs off:
+ * it skips one run after the first failure in a row, two after the second and so on, up to {@value #MAX_BACKOFF_RUNS}.
+ */
+public final class ScheduledGraph {
+    public static final int MAX_BACKOFF_RUNS = 64;
+
+    private final GraphScheduler scheduler;
+    private final GraphProvider provider;
+    private final World world;
+    private final BlockPos pos;
+    private final Supplier<Context> context;
+    final int interval;
+    final int phase;
+    boolean pending = false;
+    boolean cancelled = false;
+    long dueTick;
+    long carriedOverTicks = 0;
+    long skippedRuns = 0;
+    private long failures = 0;
+    private int consecutiveFailures = 0;
+    private int backoffRuns = 0;
+    private long lastDelay = 0;
+    private List<EvaluationError> lastErrors = List.of();
+    // The graph evaluated last, so that its plan can be released when the graph is unscheduled
+    @Nullable
+    private Graph lastGraph = null;
+
+    ScheduledGraph(GraphScheduler scheduler, GraphProvider provider, World world, BlockPos pos, int interval, int phase, Supplier<Context> context) {
+        this.scheduler = scheduler;
+        this.provider = provider;
+        this.world = world;
+        this.pos = pos;
+        this.interval = interval;
+        this.phase = phase;
+        this.context = context;
+    }
+
+    void run() {
+        if (provider instanceof BlockEntity blockEntity && blockEntity.isRemoved()) {
+            cancel();
+            return;
+        }
+        if (backoffRuns > 0) {
+            backoffRuns--;
+            return;
+        }
+        lastDelay = scheduler.getTick() - dueTick;
+        try {
+            var graph = provider.getGraph(world, pos);
+            if (graph == null)
+                throw new IllegalStateException("Provider has no graph");
+            lastGraph = graph;
+            lastErrors = graph.evaluateTiered(context.get());
+            consecutiveFailures = 0;
+        } catch (RuntimeException e) {
+            failures++;
+            // Only log the first failure in a row, the graph is likely to keep failing the same way
+            if (consecutiveFailures == 0)
+                NodeFlow.LOGGER.error("Scheduled graph at {} failed, backing off", pos, e);
+            consecutiveFailures++;
+            backoffRuns = Math.min(consecutiveFailures, MAX_BACKOFF_RUNS);
+            lastErrors = List.of(EvaluationError.Type.EVALUATION_ERROR.error(e.getMessage()));
+        }
+    }
+
+    /**
+     * Stops evaluating the graph and releases its {@link Graph#releaseExecutionPlan() execution plan}.
+     */
+    public void cancel() {
+        cancelled = true;
+        scheduler.unschedule(this);
+        if (lastGraph != null) {
+            lastGraph.releaseExecutionPlan();
+            lastGraph = null;
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * Returns the errors of the last evaluation.
+     */
+    public List<EvaluationError> getLastErrors() {
+        return lastErrors;
+    }
+
+    /**
+     * Returns how many ticks the last evaluation was delayed by, because earlier graphs used up the budget.
+     */
+    public long getLastDelay() {
+        return lastDelay;
+    }
+
+    /**
+     * Returns how many ticks in total the graph has been carried over to the next tick because of the budget.
+     */
+    public long getCarriedOverTicks() {
+        return carriedOverTicks;
+    }
+
+    /**
+     * Returns how many evaluations were skipped because the graph was delayed until it was due again.
+     */
+    public long getSkippedRuns() {
+        return skippedRuns;
+    }
+
+    /**
+     * Returns how many runs failed with an exception. Runs skipped while backing off from a failure aren't counted here or in {@link #getSkippedRuns()}.
+     */
+    public long getFailures() {
+        return failures;
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.mattidragon.nodeflow;
+
+import com.mojang.datafixers.util.Either;
+import io.github.mattidragon.nodeflow.graph.Connector;
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.GraphEnvironment;
+import io.github.mattidragon.nodeflow.graph.context.ContextType;
+import io.github.mattidragon.nodeflow.graph.data.DataType;
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import io.github.mattidragon.nodeflow.graph.node.group.DirectNodeGroup;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.text.Text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sets up the game registries for tests and builds graphs out of the built-in node types and the test nodes here.
+ */
+public final class TestSupport {
+    private static boolean bootstrapped = false;
+
+    private TestSupport() {}
+
+    public static synchronized void bootstrap() {
+        if (bootstrapped) return;
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+        NodeType.register();
+        DataType.register();
+        ContextType.register();
+        bootstrapped = true;
+    }
+
+    /**
+     * Creates an environment that allows all registered node types, the test nodes here and the given extra types.
+     */
+    public static GraphEnvironment environment(NodeType<?>... extraTypes) {
+        bootstrap();
+        var types = new ArrayList<NodeType<?>>();
+        NodeType.REGISTRY.forEach(types::add);
+        types.add(Recorder.TYPE);
+        types.add(Source.TYPE);
+        types.addAll(List.of(extraTypes));
+        return new GraphEnvironment(List.of(DataType.NUMBER, DataType.BOOLEAN), List.of(), List.of(new DirectNodeGroup(Text.literal("test"), types)));
+    }
+
+    public static <T extends Node> T add(Graph graph, NodeType<T> type) {
+        var node = type.generator().apply(graph);
+        graph.addNode(node);
+        return node;
+    }
+
+    public static void connect(Graph graph, Node from, int output, Node to, int input) {
+        graph.addConnection(from.getOutputs()[output], to.getInputs()[input]);
+    }
+
+    /**
+     * Remembers the numbers it receives, as a side effect.
+     */
+    public static class Recorder extends Node {
+        public static final NodeType<Recorder> TYPE = new NodeType<>(Recorder::new, false, true);
+        public final List<Double> values = new ArrayList<>();
+
+        private Recorder(Graph graph) {
+            super(TYPE, List.of(), graph);
+        }
+
+        /**
+         * Returns the values recorded since the last call, so that each evaluation can be checked on its own.
+         */
+        public List<Double> takeValues() {
+            var values = List.copyOf(this.values);
+            this.values.clear();
+            return values;
+        }
+
+        @Override
+        public Connector<?>[] getOutputs() {
+            return new Connector[0];
+        }
+
+        @Override
+        public Connector<?>[] getInputs() {
+            return new Connector[] { DataType.NUMBER.makeRequiredInput("value", this) };
+        }
+
+        @Override
+        protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
+            values.add(inputs[0].getAs(DataType.NUMBER));
+            return Either.left(new DataValue<?>[0]);
+        }
+    }
+
+    /**
+     * Outputs a number that can be changed between evaluations without changing the graph. Isn't pure, so it can't be folded away and keeps the rest of the graph from being folded.
+     */
+    public static class Source extends Node {
+        public static final NodeType<Source> TYPE = new NodeType<>(Source::new, false, false);
+        public double value = 2.0;
+
+        private Source(Graph graph) {
+            super(TYPE, List.of(), graph);
+        }
+
+        @Override
+        public Connector<?>[] getOutputs() {
+            return new Connector[] { DataType.NUMBER.makeOptionalOutput("value", this) };
+        }
+
+        @Override
+        public Connector<?>[] getInputs() {
+            return new Connector[0];
+        }
+
+        @Override
+        protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
+            return Either.left(new DataValue<?>[] { DataType.NUMBER.makeValue(value) });
+        }
+    }
+}
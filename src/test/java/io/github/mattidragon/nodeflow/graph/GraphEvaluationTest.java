@@ -0,0 +1,297 @@
+package io.github.mattidragon.nodeflow.graph;
+
+import com.mojang.datafixers.util.Either;
+import io.github.mattidragon.nodeflow.TestSupport;
+import io.github.mattidragon.nodeflow.TestSupport.Recorder;
+import io.github.mattidragon.nodeflow.TestSupport.Source;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.data.DataType;
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.evaluation.ExecutionTier;
+import io.github.mattidragon.nodeflow.graph.evaluation.TieredExecution;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import io.github.mattidragon.nodeflow.misc.EvaluationError;
+import net.minecraft.text.Text;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the same graphs through every way of evaluating them and checks that they all agree on the outputs and errors.
+ * The graphs include conditional nodes with failing untaken branches, which must not be evaluated in any mode.
+ */
+class GraphEvaluationTest {
+    private static final List<NodeType<?>> SHORT_CIRCUIT_TYPES = List.of(NodeType.AND, NodeType.OR, NodeType.NAND, NodeType.NOR);
+    private static final List<NodeType<?>> CONDITIONS = List.of(NodeType.TRUE, NodeType.FALSE);
+    private static GraphEnvironment env;
+
+    @BeforeAll
+    static void bootstrap() {
+        env = TestSupport.environment(Failing.TYPE);
+    }
+
+    @AfterEach
+    void resetTiers() {
+        var tiers = TieredExecution.getInstance();
+        tiers.clear();
+        tiers.setProgramThreshold(8);
+        tiers.setCompileThreshold(200);
+    }
+
+    @Test
+    void arithmetic() {
+        assertModesAgree("arithmetic", () -> {
+            var graph = new TestGraph();
+            var pi = graph.add(NodeType.PI);
+            var e = graph.add(NodeType.E);
+            var impure = graph.add(Source.TYPE);
+            var divide = graph.binary(NodeType.DIVIDE, pi, e);
+            var sqrt = graph.unary(NodeType.SQRT, divide);
+            var pow = graph.binary(NodeType.POW, sqrt, impure);
+            var max = graph.binary(NodeType.MAX, pow, graph.unary(NodeType.NEGATE, e));
+            var less = graph.binary(NodeType.LESS, max, pi);
+            return graph.record(graph.select(less, max, graph.unary(NodeType.SIN, impure)));
+        });
+    }
+
+    @Test
+    void switchSkipsUntakenBranch() {
+        for (var condition : CONDITIONS) {
+            assertModesAgree("switch " + condition, () -> {
+                var graph = new TestGraph();
+                var taken = graph.binary(NodeType.ADD, graph.add(NodeType.ONE), graph.add(Source.TYPE));
+                var failing = graph.unary(NodeType.NEGATE, graph.add(Failing.TYPE));
+                return graph.record(graph.select(graph.add(condition), taken, failing));
+            });
+        }
+    }
+
+    @Test
+    void nestedSwitchSkipsUntakenBranches() {
+        for (var condition : CONDITIONS) {
+            assertModesAgree("nested switch " + condition, () -> {
+                var graph = new TestGraph();
+                var inner = graph.select(graph.add(NodeType.TRUE), graph.add(NodeType.ONE), graph.add(Failing.TYPE));
+                return graph.record(graph.select(graph.add(condition), inner, graph.add(Failing.TYPE)));
+            });
+        }
+    }
+
+    @Test
+    void shortCircuitSkipsSecondInput() {
+        for (var type : SHORT_CIRCUIT_TYPES) {
+            for (var first : CONDITIONS) {
+                assertModesAgree(type + " " + first, () -> {
+                    var graph = new TestGraph();
+                    var failing = graph.binary(NodeType.LESS, graph.add(Failing.TYPE), graph.add(NodeType.ONE));
+                    var result = graph.binary(type, graph.add(first), failing);
+                    return graph.record(graph.select(result, graph.add(NodeType.ONE), graph.add(NodeType.ZERO)));
+                });
+            }
+        }
+    }
+
+    @Test
+    void shortCircuitEvaluatesNeededSecondInput() {
+        for (var type : SHORT_CIRCUIT_TYPES) {
+            for (var first : CONDITIONS) {
+                for (var second : CONDITIONS) {
+                    assertModesAgree(type + " " + first + " " + second, () -> {
+                        var graph = new TestGraph();
+                        var result = graph.binary(type, graph.add(first), graph.add(second));
+                        return graph.record(graph.select(result, graph.add(NodeType.ONE), graph.add(Source.TYPE)));
+                    });
+                }
+            }
+        }
+    }
+
+    private static void assertModesAgree(String name, Supplier<TestGraph> graphs) {
+        var expected = Mode.EVALUATE.run(graphs.get());
+        for (var mode : Mode.values()) {
+            assertEquals(expected, mode.run(graphs.get()), name + " evaluated with " + mode);
+        }
+    }
+
+    private enum Mode {
+        EVALUATE {
+            @Override
+            Result run(TestGraph graph) {
+                return graph.result(graph.graph.evaluate(Context.empty()));
+            }
+        },
+        PARALLEL {
+            @Override
+            Result run(TestGraph graph) {
+                return graph.result(graph.graph.evaluateParallel(Context.empty()));
+            }
+        },
+        BATCH {
+            @Override
+            Result run(TestGraph graph) {
+                var errors = graph.graph.evaluateBatch(List.of(Context.empty(), Context.empty()));
+                assertEquals(types(errors.get(0)), types(errors.get(1)), "both contexts of the batch");
+                // The recorder runs for both contexts at once, so each value is recorded twice in a row
+                var values = graph.takeValues();
+                assertEquals(0, values.size() % 2);
+                assertEquals(values.subList(0, values.size() / 2), values.subList(values.size() / 2, values.size()));
+                return new Result(types(errors.get(0)), values.subList(0, values.size() / 2));
+            }
+        },
+        INCREMENTAL {
+            @Override
+            Result run(TestGraph graph) {
+                var first = graph.result(graph.graph.evaluateIncremental(Context.empty()));
+                // The second evaluation reuses the remembered outputs
+                var second = graph.result(graph.graph.evaluateIncremental(Context.empty()));
+                assertEquals(first, second, "reevaluation");
+                return second;
+            }
+        },
+        COMPILED {
+            @Override
+            Result run(TestGraph graph) {
+                var result = graph.result(graph.graph.evaluateCompiled(Context.empty()));
+                assertNotNull(graph.graph.getExecutionPlan().getCompiled(), "compiled graph");
+                return result;
+            }
+        },
+        PROGRAM {
+            @Override
+            Result run(TestGraph graph) {
+                var result = graph.result(graph.graph.evaluateProgram(Context.empty()));
+                assertNotNull(graph.graph.getExecutionPlan().getProgram(), "register program");
+                return result;
+            }
+        },
+        OUTPUT {
+            @Override
+            Result run(TestGraph graph) {
+                var result = graph.graph.evaluateOutput(graph.result, Context.empty());
+                if (result.left().isPresent())
+                    return new Result(List.of(), List.of(result.left().get().getAs(DataType.NUMBER)));
+                return new Result(List.of(result.right().orElseThrow().type()), List.of());
+            }
+        },
+        TIERED {
+            @Override
+            Result run(TestGraph graph) {
+                var tiers = TieredExecution.getInstance();
+                tiers.setProgramThreshold(1);
+                tiers.setCompileThreshold(2);
+                var usedTiers = EnumSet.noneOf(ExecutionTier.class);
+                Result result = null;
+                for (int i = 0; i < 4; i++) {
+                    usedTiers.add(graph.graph.getExecutionPlan().getTier());
+                    var current = graph.result(graph.graph.evaluateTiered(Context.empty()));
+                    if (result != null)
+                        assertEquals(result, current, "evaluation " + i + " with tier " + graph.graph.getExecutionPlan().getTier());
+                    result = current;
+                }
+                assertEquals(EnumSet.allOf(ExecutionTier.class), usedTiers);
+                return result;
+            }
+        };
+
+        abstract Result run(TestGraph graph);
+    }
+
+    private record Result(List<EvaluationError.Type> errors, List<Double> values) {
+    }
+
+    private static List<EvaluationError.Type> types(List<EvaluationError> errors) {
+        return errors.stream().map(EvaluationError::type).toList();
+    }
+
+    private static class TestGraph {
+        private final Graph graph = new Graph(env);
+        private Recorder recorder;
+        private Connector<?> result;
+
+        private TestGraph() {
+            // Enough independent nodes for parallel evaluation to split the graph
+            for (int i = 0; i < 20; i++) {
+                add(Source.TYPE);
+            }
+        }
+
+        private Node add(NodeType<?> type) {
+            var node = type.generator().apply(graph);
+            graph.addNode(node);
+            return node;
+        }
+
+        private void connect(Node from, Node to, int input) {
+            graph.addConnection(from.getOutputs()[0], to.getInputs()[input]);
+        }
+
+        private Node unary(NodeType<?> type, Node input) {
+            var node = add(type);
+            connect(input, node, 0);
+            return node;
+        }
+
+        private Node binary(NodeType<?> type, Node first, Node second) {
+            var node = add(type);
+            connect(first, node, 0);
+            connect(second, node, 1);
+            return node;
+        }
+
+        private Node select(Node condition, Node ifTrue, Node ifFalse) {
+            var node = add(NodeType.SWITCH);
+            connect(condition, node, 0);
+            connect(ifTrue, node, 1);
+            connect(ifFalse, node, 2);
+            return node;
+        }
+
+        private TestGraph record(Node node) {
+            recorder = (Recorder) add(Recorder.TYPE);
+            connect(node, recorder, 0);
+            result = node.getOutputs()[0];
+            return this;
+        }
+
+        private Result result(List<EvaluationError> errors) {
+            return new Result(types(errors), takeValues());
+        }
+
+        private List<Double> takeValues() {
+            return recorder.takeValues();
+        }
+    }
+
+    /**
+     * Always fails, so any mode that evaluates it when it isn't needed gets an error the others don't.
+     */
+    private static class Failing extends Node {
+        private static final NodeType<Failing> TYPE = new NodeType<>(Failing::new, false, false);
+
+        private Failing(Graph graph) {
+            super(TYPE, List.of(), graph);
+        }
+
+        @Override
+        public Connector<?>[] getOutputs() {
+            return new Connector[] { DataType.NUMBER.makeOptionalOutput("value", this) };
+        }
+
+        @Override
+        public Connector<?>[] getInputs() {
+            return new Connector[0];
+        }
+
+        @Override
+        protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
+            return Either.right(Text.literal("Evaluated a branch that isn't needed"));
+        }
+    }
+}
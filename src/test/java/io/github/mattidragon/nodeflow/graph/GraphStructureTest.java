@@ -0,0 +1,98 @@
+package io.github.mattidragon.nodeflow.graph;
+
+import io.github.mattidragon.nodeflow.TestSupport;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import net.minecraft.nbt.NbtCompound;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the execution plan is only recreated when the graph changes, and that the connection indexes always match the connections.
+ */
+class GraphStructureTest {
+    private static GraphEnvironment env;
+
+    @BeforeAll
+    static void bootstrap() {
+        env = TestSupport.environment();
+    }
+
+    @Test
+    void planIsReusedUntilGraphChanges() {
+        var graph = new Graph(env);
+        var first = TestSupport.add(graph, NodeType.ONE);
+        var plan = graph.getExecutionPlan();
+        assertSame(plan, graph.getExecutionPlan());
+
+        var negate = TestSupport.add(graph, NodeType.NEGATE);
+        assertPlanChanges(graph, g -> TestSupport.connect(g, first, 0, negate, 0));
+        assertPlanChanges(graph, g -> g.removeConnections(negate.getInputs()[0]));
+        assertPlanChanges(graph, g -> TestSupport.add(g, NodeType.ZERO));
+        assertPlanChanges(graph, g -> g.removeNode(negate.id));
+        var nbt = new NbtCompound();
+        graph.writeNbt(nbt);
+        assertPlanChanges(graph, g -> g.readNbt(nbt));
+    }
+
+    @Test
+    void indexesFollowConnections() {
+        var graph = new Graph(env);
+        var one = TestSupport.add(graph, NodeType.ONE);
+        var add = TestSupport.add(graph, NodeType.ADD);
+        var negate = TestSupport.add(graph, NodeType.NEGATE);
+        TestSupport.connect(graph, one, 0, add, 0);
+        TestSupport.connect(graph, one, 0, add, 1);
+        TestSupport.connect(graph, add, 0, negate, 0);
+        assertIndexesMatch(graph);
+        assertEquals(2, graph.getConnections(one.getOutputs()[0]).size());
+        assertEquals(1, graph.getConnections(add.getInputs()[1]).size());
+
+        graph.removeConnections(add.getInputs()[0]);
+        assertIndexesMatch(graph);
+        assertEquals(1, graph.getConnections(one.getOutputs()[0]).size());
+
+        var copy = graph.copy();
+        assertIndexesMatch(copy);
+        assertEquals(graph.getConnections(), copy.getConnections());
+
+        graph.removeNode(add.id);
+        assertIndexesMatch(graph);
+        assertEquals(Set.of(), graph.getConnections(one.id));
+        assertEquals(Set.of(), graph.getConnections(negate.getInputs()[0]));
+    }
+
+    private static void assertPlanChanges(Graph graph, Consumer<Graph> change) {
+        var plan = graph.getExecutionPlan();
+        change.accept(graph);
+        assertNotSame(plan, graph.getExecutionPlan());
+    }
+
+    /**
+     * Compares the indexed lookups with the connections found by scanning the whole graph.
+     */
+    private static void assertIndexesMatch(Graph graph) {
+        for (Node node : graph.getNodes()) {
+            var expected = new HashSet<Connection>();
+            for (var connection : graph.getConnections()) {
+                if (connection.targetUuid().equals(node.id) || connection.sourceUuid().equals(node.id))
+                    expected.add(connection);
+            }
+            assertEquals(expected, graph.getConnections(node.id));
+
+            for (var input : node.getInputs()) {
+                assertEquals(graph.getConnections().stream().filter(connection -> connection.getTargetConnector(graph).equals(input)).collect(Collectors.toSet()), graph.getConnections(input));
+            }
+            for (var output : node.getOutputs()) {
+                assertEquals(graph.getConnections().stream().filter(connection -> connection.getSourceConnector(graph).equals(output)).collect(Collectors.toSet()), graph.getConnections(output));
+            }
+        }
+    }
+}
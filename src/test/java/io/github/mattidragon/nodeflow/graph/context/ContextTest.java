@@ -0,0 +1,149 @@
+package io.github.mattidragon.nodeflow.graph.context;
+
+import com.mojang.datafixers.util.Either;
+import io.github.mattidragon.nodeflow.NodeFlow;
+import io.github.mattidragon.nodeflow.TestSupport;
+import io.github.mattidragon.nodeflow.graph.Connector;
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.GraphEnvironment;
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import io.github.mattidragon.nodeflow.misc.EvaluationError;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContextTest {
+    private static GraphEnvironment env;
+    private static ContextType<CharSequence> charsType;
+    private static ContextType<String> stringType;
+
+    @BeforeAll
+    static void bootstrap() {
+        env = TestSupport.environment(Reader.TYPE);
+        charsType = ContextType.register(new ContextType<>(CharSequence.class), NodeFlow.id("test_chars"));
+        stringType = ContextType.register(new ContextType<>(String.class, new ContextType[]{ charsType }), NodeFlow.id("test_string"));
+    }
+
+    @Test
+    void storesValues() {
+        var pos = BlockPos.ORIGIN;
+        var context = Context.builder().put(ContextType.BLOCK_POS, pos).build();
+        assertTrue(context.contains(ContextType.BLOCK_POS));
+        assertSame(pos, context.get(ContextType.BLOCK_POS));
+        assertFalse(context.contains(ContextType.WORLD));
+        assertThrows(NoSuchElementException.class, () -> context.get(ContextType.WORLD));
+    }
+
+    @Test
+    void resolvesParentsByDistance() {
+        var context = new MutableContext().put(stringType, "child");
+        assertEquals("child", context.get(charsType));
+
+        // A value put as the parent itself is closer than the child
+        var builder = new StringBuilder("parent");
+        context.put(charsType, builder);
+        assertSame(builder, context.get(charsType));
+        assertEquals("child", context.get(stringType));
+
+        context.remove(charsType);
+        assertEquals("child", context.get(charsType));
+    }
+
+    @Test
+    void mutableContextsCanBeReused() {
+        var context = new MutableContext().put(stringType, "first");
+        context.put(stringType, "second");
+        assertEquals("second", context.get(charsType));
+
+        context.remove(stringType);
+        assertFalse(context.contains(stringType));
+        assertFalse(context.contains(charsType));
+
+        context.put(stringType, "third").reset();
+        assertFalse(context.contains(stringType));
+        context.putAll(Context.builder().put(stringType, "copied").build());
+        assertEquals("copied", context.get(charsType));
+    }
+
+    @Test
+    void unregisteredTypesAreMissing() {
+        var unregistered = new ContextType<>(String.class);
+        var context = new MutableContext().put(stringType, "value");
+        assertFalse(context.contains(unregistered));
+        assertThrows(NoSuchElementException.class, () -> context.get(unregistered));
+        context.remove(unregistered);
+        assertThrows(IllegalStateException.class, () -> context.put(unregistered, "value"));
+    }
+
+    @Test
+    void computesLazyValuesOnlyWhenUsed() {
+        var calls = new int[1];
+        var context = Context.builder().putLazy(stringType, () -> {
+            calls[0]++;
+            return "lazy";
+        }).build();
+        assertTrue(context.contains(charsType));
+
+        var unused = new Graph(env);
+        TestSupport.add(unused, TestSupport.Source.TYPE);
+        assertEquals(List.of(), unused.evaluate(context));
+        assertEquals(0, calls[0]);
+
+        var graph = new Graph(env);
+        var reader = TestSupport.add(graph, Reader.TYPE);
+        assertEquals(List.of(), graph.evaluate(context));
+        assertEquals(List.of(), graph.evaluate(context));
+        assertEquals(List.of("lazy", "lazy"), reader.values);
+        assertEquals(1, calls[0]);
+    }
+
+    @Test
+    void collectsRequiredContexts() {
+        var graph = new Graph(env);
+        assertEquals(Set.of(), graph.getRequiredContexts());
+        TestSupport.add(graph, Reader.TYPE);
+        TestSupport.add(graph, NodeType.TIME);
+        assertEquals(Set.of(charsType, ContextType.WORLD), graph.getRequiredContexts());
+
+        var errors = graph.evaluate(Context.builder().put(stringType, "value").build());
+        assertEquals(List.of(EvaluationError.Type.MISSING_CONTEXTS), errors.stream().map(EvaluationError::type).toList());
+    }
+
+    /**
+     * Remembers the text it reads from the context, as a side effect.
+     */
+    private static class Reader extends Node {
+        private static final NodeType<Reader> TYPE = new NodeType<>(Reader::new, false, true);
+        private final List<String> values = new ArrayList<>();
+
+        private Reader(Graph graph) {
+            super(TYPE, List.of(charsType), graph);
+        }
+
+        @Override
+        public Connector<?>[] getOutputs() {
+            return new Connector[0];
+        }
+
+        @Override
+        public Connector<?>[] getInputs() {
+            return new Connector[0];
+        }
+
+        @Override
+        protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
+            values.add(context.get(charsType).toString());
+            return Either.left(new DataValue<?>[0]);
+        }
+    }
+}
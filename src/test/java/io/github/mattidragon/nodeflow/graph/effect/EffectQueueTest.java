@@ -0,0 +1,97 @@
+package io.github.mattidragon.nodeflow.graph.effect;
+
+import com.mojang.datafixers.util.Either;
+import io.github.mattidragon.nodeflow.TestSupport;
+import io.github.mattidragon.nodeflow.graph.Connector;
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.GraphEnvironment;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.context.ContextType;
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import io.github.mattidragon.nodeflow.misc.EvaluationError;
+import net.minecraft.text.Text;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EffectQueueTest {
+    private static GraphEnvironment env;
+
+    @BeforeAll
+    static void bootstrap() {
+        env = TestSupport.environment(Emitter.TYPE);
+    }
+
+    @Test
+    void appliesEffectsOnlyAfterSuccess() {
+        var graph = new Graph(env);
+        var emitter = TestSupport.add(graph, Emitter.TYPE);
+
+        var errors = graph.evaluateAsync(Context.empty(), Runnable::run, Runnable::run).join();
+        assertEquals(List.of(), errors);
+        assertEquals(1, emitter.applied);
+
+        // The effect is emitted before the node fails, and has to be discarded with the rest of the evaluation
+        emitter.fail = true;
+        errors = graph.evaluateAsync(Context.empty(), Runnable::run, Runnable::run).join();
+        assertEquals(List.of(EvaluationError.Type.EVALUATION_ERROR), errors.stream().map(EvaluationError::type).toList());
+        assertEquals(1, emitter.applied);
+    }
+
+    @Test
+    void queuesEffectsInOrder() {
+        var applied = new ArrayList<Integer>();
+        var queue = new EffectQueue();
+        var context = Context.builder().put(ContextType.EFFECT_QUEUE, queue).build();
+        EffectQueue.emit(context, () -> applied.add(1));
+        EffectQueue.emit(context, () -> applied.add(2));
+        assertEquals(List.of(), applied);
+        assertEquals(2, queue.size());
+
+        queue.applyAll();
+        assertEquals(List.of(1, 2), applied);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void appliesImmediatelyWithoutQueue() {
+        var applied = new ArrayList<Integer>();
+        EffectQueue.emit(Context.empty(), () -> applied.add(1));
+        assertEquals(List.of(1), applied);
+    }
+
+    /**
+     * Emits an effect that counts how often it's applied, and fails afterwards if told to.
+     */
+    private static class Emitter extends Node {
+        private static final NodeType<Emitter> TYPE = new NodeType<>(Emitter::new, false, true);
+        private boolean fail = false;
+        private int applied = 0;
+
+        private Emitter(Graph graph) {
+            super(TYPE, List.of(), graph);
+        }
+
+        @Override
+        public Connector<?>[] getOutputs() {
+            return new Connector[0];
+        }
+
+        @Override
+        public Connector<?>[] getInputs() {
+            return new Connector[0];
+        }
+
+        @Override
+        protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
+            context.emit(() -> applied++);
+            return fail ? Either.right(Text.literal("Failed")) : Either.left(new DataValue<?>[0]);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.mattidragon.nodeflow.graph.effect;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.Vec3d;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the grid lookup of {@link MessageBatcher} with plain positions standing in for players.
+ */
+class MessageBatcherTest {
+    @Test
+    void onlyReachesPlayersInRange() {
+        var near = new Vec3d(10.5, 0.5, 0.5);
+        // In a different cell than the broadcast
+        var nearOtherCell = new Vec3d(-14.5, 0.5, 0.5);
+        var diagonal = new Vec3d(12.5, 0.5, 12.5);
+        var far = new Vec3d(40.5, 0.5, 0.5);
+        var grid = MessageBatcher.buildGrid(List.of(near, nearOtherCell, diagonal, far), position -> position);
+
+        var received = new LinkedHashMap<Vec3d, Set<String>>();
+        MessageBatcher.collectNearby(grid, position -> position, BlockPos.ORIGIN, 16, "hello", received);
+        assertEquals(Map.of(near, Set.of("hello"), nearOtherCell, Set.of("hello")), received);
+    }
+
+    @Test
+    void deduplicatesMessagesPerPlayer() {
+        var player = new Vec3d(0.5, 0.5, 0.5);
+        var other = new Vec3d(20.5, 0.5, 0.5);
+        var grid = MessageBatcher.buildGrid(List.of(player, other), position -> position);
+
+        var received = new LinkedHashMap<Vec3d, Set<String>>();
+        MessageBatcher.collectNearby(grid, position -> position, BlockPos.ORIGIN, 16, "hello", received);
+        MessageBatcher.collectNearby(grid, position -> position, new BlockPos(10, 0, 0), 16, "hello", received);
+        MessageBatcher.collectNearby(grid, position -> position, new BlockPos(10, 0, 0), 16, "world", received);
+        assertEquals(List.of("hello", "world"), List.copyOf(received.get(player)));
+        assertEquals(List.of("hello", "world"), List.copyOf(received.get(other)));
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.TestSupport;
+import io.github.mattidragon.nodeflow.TestSupport.Recorder;
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.GraphEnvironment;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import io.github.mattidragon.nodeflow.misc.EvaluationError;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConstantFoldingTest {
+    private static GraphEnvironment env;
+
+    @BeforeAll
+    static void bootstrap() {
+        env = TestSupport.environment();
+    }
+
+    @Test
+    void foldsConstantChain() {
+        var graph = new Graph(env);
+        var number = TestSupport.add(graph, NodeType.NUMBER);
+        number.setValue("2");
+        var negate = TestSupport.add(graph, NodeType.NEGATE);
+        var recorder = TestSupport.add(graph, Recorder.TYPE);
+        TestSupport.connect(graph, number, 0, negate, 0);
+        TestSupport.connect(graph, negate, 0, recorder, 0);
+
+        assertEquals(List.of(), graph.evaluate(Context.empty()));
+        assertEquals(List.of(-2.0), recorder.takeValues());
+        assertTrue(isFolded(graph, number));
+        assertTrue(isFolded(graph, negate));
+        assertFalse(isFolded(graph, recorder));
+    }
+
+    @Test
+    void changingValueRefolds() {
+        var graph = new Graph(env);
+        var number = TestSupport.add(graph, NodeType.NUMBER);
+        number.setValue("2");
+        var recorder = TestSupport.add(graph, Recorder.TYPE);
+        TestSupport.connect(graph, number, 0, recorder, 0);
+        assertEquals(List.of(), graph.evaluate(Context.empty()));
+        assertEquals(List.of(2.0), recorder.takeValues());
+
+        number.setValue("3");
+        assertEquals(List.of(), graph.evaluate(Context.empty()));
+        assertEquals(List.of(3.0), recorder.takeValues());
+
+        // Invalid values aren't folded, so that evaluation reports them
+        number.setValue("three");
+        assertFalse(isFolded(graph, number));
+        assertEquals(List.of(EvaluationError.Type.INVALID_CONFIG), graph.evaluate(Context.empty()).stream().map(EvaluationError::type).toList());
+    }
+
+    @Test
+    void skipsNodesWithUnconnectedInputs() {
+        var graph = new Graph(env);
+        var negate = TestSupport.add(graph, NodeType.NEGATE);
+        TestSupport.connect(graph, negate, 0, TestSupport.add(graph, Recorder.TYPE), 0);
+
+        assertFalse(isFolded(graph, negate));
+        assertEquals(List.of(EvaluationError.Type.NOT_CONNECTED), graph.evaluate(Context.empty()).stream().map(EvaluationError::type).toList());
+    }
+
+    private static boolean isFolded(Graph graph, Node node) {
+        var plan = graph.getExecutionPlan();
+        return plan.folded[plan.getOrder().indexOf(node)];
+    }
+}
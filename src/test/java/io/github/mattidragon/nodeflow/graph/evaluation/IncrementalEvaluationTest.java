@@ -0,0 +1,93 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import com.mojang.datafixers.util.Either;
+import io.github.mattidragon.nodeflow.TestSupport;
+import io.github.mattidragon.nodeflow.TestSupport.Recorder;
+import io.github.mattidragon.nodeflow.TestSupport.Source;
+import io.github.mattidragon.nodeflow.graph.Connector;
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.GraphEnvironment;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.data.DataType;
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import net.minecraft.text.Text;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalEvaluationTest {
+    private static GraphEnvironment env;
+
+    @BeforeAll
+    static void bootstrap() {
+        env = TestSupport.environment(Counting.TYPE);
+    }
+
+    @Test
+    void skipsNodesWithUnchangedInputs() {
+        var graph = new Graph(env);
+        var source = TestSupport.add(graph, Source.TYPE);
+        var counting = TestSupport.add(graph, Counting.TYPE);
+        var recorder = TestSupport.add(graph, Recorder.TYPE);
+        TestSupport.connect(graph, source, 0, counting, 0);
+        TestSupport.connect(graph, counting, 0, recorder, 0);
+
+        assertEquals(List.of(), graph.evaluateIncremental(Context.empty()));
+        assertEquals(List.of(), graph.evaluateIncremental(Context.empty()));
+        assertEquals(1, counting.calls);
+        // Nodes with side effects run every time
+        assertEquals(List.of(2.0, 2.0), recorder.takeValues());
+
+        source.value = 3;
+        assertEquals(List.of(), graph.evaluateIncremental(Context.empty()));
+        assertEquals(2, counting.calls);
+        assertEquals(List.of(3.0), recorder.takeValues());
+    }
+
+    @Test
+    void changingGraphForgetsOutputs() {
+        var graph = new Graph(env);
+        var source = TestSupport.add(graph, Source.TYPE);
+        var counting = TestSupport.add(graph, Counting.TYPE);
+        TestSupport.connect(graph, source, 0, counting, 0);
+        TestSupport.connect(graph, counting, 0, TestSupport.add(graph, Recorder.TYPE), 0);
+        assertEquals(List.of(), graph.evaluateIncremental(Context.empty()));
+
+        TestSupport.add(graph, Source.TYPE);
+        assertEquals(List.of(), graph.evaluateIncremental(Context.empty()));
+        assertEquals(2, counting.calls);
+    }
+
+    /**
+     * Passes its input through and counts how often it runs.
+     */
+    private static class Counting extends Node {
+        private static final NodeType<Counting> TYPE = new NodeType<>(Counting::new, true);
+        private int calls = 0;
+
+        private Counting(Graph graph) {
+            super(TYPE, List.of(), graph);
+        }
+
+        @Override
+        public Connector<?>[] getOutputs() {
+            return new Connector[] { DataType.NUMBER.makeRequiredOutput("value", this) };
+        }
+
+        @Override
+        public Connector<?>[] getInputs() {
+            return new Connector[] { DataType.NUMBER.makeRequiredInput("value", this) };
+        }
+
+        @Override
+        protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
+            calls++;
+            return Either.left(new DataValue<?>[] { inputs[0] });
+        }
+    }
+}
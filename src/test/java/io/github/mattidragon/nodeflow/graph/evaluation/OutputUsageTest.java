@@ -0,0 +1,154 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import com.mojang.datafixers.util.Either;
+import io.github.mattidragon.nodeflow.TestSupport;
+import io.github.mattidragon.nodeflow.TestSupport.Recorder;
+import io.github.mattidragon.nodeflow.graph.Connector;
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.GraphEnvironment;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.data.DataType;
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import net.minecraft.text.Text;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutputUsageTest {
+    private static GraphEnvironment env;
+
+    @BeforeAll
+    static void bootstrap() {
+        env = TestSupport.environment(Pair.TYPE, SinkPair.TYPE);
+    }
+
+    @Test
+    void onlyConnectedOutputsAreUsed() {
+        var graph = new Graph(env);
+        var pair = TestSupport.add(graph, Pair.TYPE);
+        var recorder = TestSupport.add(graph, Recorder.TYPE);
+        TestSupport.connect(graph, pair, 1, recorder, 0);
+
+        assertEquals(List.of(), graph.evaluate(Context.empty()));
+        assertEquals(List.of(List.of(false, true)), pair.used);
+        assertEquals(List.of(2.0), recorder.takeValues());
+    }
+
+    @Test
+    void sinkNodesSeeUsedOutputs() {
+        var graph = new Graph(env);
+        var pair = TestSupport.add(graph, SinkPair.TYPE);
+        var recorder = TestSupport.add(graph, Recorder.TYPE);
+        TestSupport.connect(graph, pair, 0, recorder, 0);
+
+        assertEquals(List.of(), graph.evaluate(Context.empty()));
+        assertEquals(List.of(), graph.evaluateCompiled(Context.empty()));
+        var expected = new BitSet();
+        expected.set(0);
+        assertEquals(List.of(expected, expected), pair.used);
+        assertEquals(List.of(1.0, 1.0), recorder.takeValues());
+    }
+
+    @Test
+    void eitherNodesWorkThroughSinks() {
+        var graph = new Graph(env);
+        var pair = TestSupport.add(graph, Pair.TYPE);
+        var recorder = TestSupport.add(graph, Recorder.TYPE);
+        TestSupport.connect(graph, pair, 1, recorder, 0);
+
+        assertEquals(List.of(), graph.evaluateCompiled(Context.empty()));
+        assertEquals(List.of(List.of(false, true)), pair.used);
+        assertEquals(List.of(2.0), recorder.takeValues());
+
+        // Called directly, the adapter computes everything if no mask is given
+        var sink = OutputSink.create(pair, Context.empty(), null);
+        assertTrue(pair.process(new DataValue<?>[0], sink));
+        assertEquals(List.of(true, true), pair.used.get(1));
+        assertEquals(2, sink.toResult(true).left().orElseThrow().length);
+    }
+
+    @Test
+    void requestedOutputIsUsedWithoutConnections() {
+        var graph = new Graph(env);
+        var pair = TestSupport.add(graph, Pair.TYPE);
+
+        var result = graph.evaluateOutput(pair.getOutputs()[0], Context.empty());
+        assertEquals(1.0, result.left().orElseThrow().getAs(DataType.NUMBER));
+        assertEquals(List.of(List.of(true, true)), pair.used);
+    }
+
+    /**
+     * Outputs one and two, and only computes the outputs that are used.
+     */
+    private static class Pair extends Node {
+        private static final NodeType<Pair> TYPE = new NodeType<>(Pair::new, false, false);
+        private final List<List<Boolean>> used = new ArrayList<>();
+
+        private Pair(Graph graph) {
+            super(TYPE, List.of(), graph);
+        }
+
+        @Override
+        public Connector<?>[] getOutputs() {
+            return new Connector[] { DataType.NUMBER.makeOptionalOutput("first", this), DataType.NUMBER.makeOptionalOutput("second", this) };
+        }
+
+        @Override
+        public Connector<?>[] getInputs() {
+            return new Connector[0];
+        }
+
+        @Override
+        protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
+            used.add(List.of(context.isOutputUsed(0), context.isOutputUsed(1)));
+            return Either.left(new DataValue<?>[] {
+                    context.isOutputUsed(0) ? DataType.NUMBER.makeValue(1.0) : null,
+                    context.isOutputUsed(1) ? DataType.NUMBER.makeValue(2.0) : null
+            });
+        }
+    }
+
+    /**
+     * Like {@link Pair}, but writes its outputs to the sink directly.
+     */
+    private static class SinkPair extends Node {
+        private static final NodeType<SinkPair> TYPE = new NodeType<>(SinkPair::new, false, false);
+        private final List<BitSet> used = new ArrayList<>();
+
+        private SinkPair(Graph graph) {
+            super(TYPE, List.of(), graph);
+        }
+
+        @Override
+        public Connector<?>[] getOutputs() {
+            return new Connector[] { DataType.NUMBER.makeOptionalOutput("first", this), DataType.NUMBER.makeOptionalOutput("second", this) };
+        }
+
+        @Override
+        public Connector<?>[] getInputs() {
+            return new Connector[0];
+        }
+
+        @Override
+        protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
+            return processWithSink(inputs, context);
+        }
+
+        @Override
+        public boolean process(DataValue<?>[] inputs, OutputSink sink) {
+            used.add((BitSet) sink.getUsedOutputs().clone());
+            if (sink.isOutputUsed(0))
+                sink.set(0, DataType.NUMBER.makeValue(1.0));
+            if (sink.isOutputUsed(1))
+                sink.set(1, DataType.NUMBER.makeValue(2.0));
+            return true;
+        }
+    }
+}
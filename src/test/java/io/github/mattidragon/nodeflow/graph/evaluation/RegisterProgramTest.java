@@ -0,0 +1,76 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.TestSupport;
+import io.github.mattidragon.nodeflow.TestSupport.Recorder;
+import io.github.mattidragon.nodeflow.TestSupport.Source;
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.GraphEnvironment;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegisterProgramTest {
+    private static GraphEnvironment env;
+
+    @BeforeAll
+    static void bootstrap() {
+        env = TestSupport.environment();
+    }
+
+    @Test
+    void everyOpMatchesInterpreter() {
+        var tested = EnumSet.noneOf(PrimitiveOp.class);
+        for (var type : NodeType.REGISTRY) {
+            var op = type.generator().apply(new Graph(env)) instanceof PrimitiveNode primitive ? primitive.getOp() : null;
+            if (op == null) continue;
+            tested.add(op);
+
+            var graph = createGraph(type, op);
+            var recorder = (Recorder) graph.getNodes().stream().filter(Recorder.class::isInstance).findFirst().orElseThrow();
+            assertEquals(List.of(), graph.evaluate(Context.empty()));
+            var expected = recorder.takeValues();
+            assertEquals(List.of(), graph.evaluateProgram(Context.empty()));
+            assertNotNull(graph.getExecutionPlan().getProgram());
+            assertEquals(expected, recorder.takeValues(), type.toString());
+        }
+        assertEquals(EnumSet.allOf(PrimitiveOp.class), tested);
+    }
+
+    /**
+     * Feeds the op from sources, so that it isn't folded, and records its result. Boolean results are recorded through a switch.
+     */
+    private static Graph createGraph(NodeType<?> type, PrimitiveOp op) {
+        var graph = new Graph(env);
+        var booleans = op.getShape().hasBooleanInputs();
+        var node = TestSupport.add(graph, type);
+        for (int i = 0; i < op.getShape().getArity(); i++) {
+            Node input = TestSupport.add(graph, Source.TYPE);
+            if (booleans) {
+                var comparison = TestSupport.add(graph, i == 0 ? NodeType.LESS : NodeType.GREATER);
+                TestSupport.connect(graph, input, 0, comparison, 0);
+                TestSupport.connect(graph, TestSupport.add(graph, NodeType.ONE), 0, comparison, 1);
+                input = comparison;
+            } else if (i == 1) {
+                ((Source) input).value = 0.5;
+            }
+            TestSupport.connect(graph, input, 0, node, i);
+        }
+
+        Node result = node;
+        if (op.getShape().hasBooleanOutput()) {
+            result = TestSupport.add(graph, NodeType.SWITCH);
+            TestSupport.connect(graph, node, 0, result, 0);
+            TestSupport.connect(graph, TestSupport.add(graph, NodeType.ONE), 0, result, 1);
+            TestSupport.connect(graph, TestSupport.add(graph, NodeType.ZERO), 0, result, 2);
+        }
+        TestSupport.connect(graph, result, 0, TestSupport.add(graph, Recorder.TYPE), 0);
+        return graph;
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import io.github.mattidragon.nodeflow.TestSupport;
+import io.github.mattidragon.nodeflow.TestSupport.Recorder;
+import io.github.mattidragon.nodeflow.TestSupport.Source;
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.GraphEnvironment;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StepMergingTest {
+    private static GraphEnvironment env;
+
+    @BeforeAll
+    static void bootstrap() {
+        env = TestSupport.environment();
+    }
+
+    @Test
+    void mergesDuplicatePureNodes() {
+        var graph = new Graph(env);
+        var source = TestSupport.add(graph, Source.TYPE);
+        var first = TestSupport.add(graph, NodeType.SQRT);
+        var second = TestSupport.add(graph, NodeType.SQRT);
+        var sum = TestSupport.add(graph, NodeType.ADD);
+        var recorder = TestSupport.add(graph, Recorder.TYPE);
+        TestSupport.connect(graph, source, 0, first, 0);
+        TestSupport.connect(graph, source, 0, second, 0);
+        TestSupport.connect(graph, first, 0, sum, 0);
+        TestSupport.connect(graph, second, 0, sum, 1);
+        TestSupport.connect(graph, sum, 0, recorder, 0);
+
+        assertEquals(1, graph.getExecutionPlan().getMergedNodeCount());
+        assertEquals(List.of(), graph.evaluate(Context.empty()));
+        assertEquals(List.of(2 * Math.sqrt(2)), recorder.takeValues());
+    }
+
+    @Test
+    void keepsNodesWithDifferentInputsOrTypes() {
+        var graph = new Graph(env);
+        var first = TestSupport.add(graph, Source.TYPE);
+        var second = TestSupport.add(graph, Source.TYPE);
+        var sqrt = TestSupport.add(graph, NodeType.SQRT);
+        var otherInput = TestSupport.add(graph, NodeType.SQRT);
+        var otherType = TestSupport.add(graph, NodeType.NEGATE);
+        TestSupport.connect(graph, first, 0, sqrt, 0);
+        TestSupport.connect(graph, second, 0, otherInput, 0);
+        TestSupport.connect(graph, first, 0, otherType, 0);
+        TestSupport.connect(graph, sqrt, 0, TestSupport.add(graph, Recorder.TYPE), 0);
+        TestSupport.connect(graph, otherInput, 0, TestSupport.add(graph, Recorder.TYPE), 0);
+        TestSupport.connect(graph, otherType, 0, TestSupport.add(graph, Recorder.TYPE), 0);
+
+        // Sources aren't pure, so they can't be merged either
+        assertEquals(0, graph.getExecutionPlan().getMergedNodeCount());
+    }
+}
@@ -0,0 +1,91 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import com.mojang.datafixers.util.Either;
+import io.github.mattidragon.nodeflow.TestSupport;
+import io.github.mattidragon.nodeflow.graph.Connector;
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.GraphEnvironment;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.graph.data.DataValue;
+import io.github.mattidragon.nodeflow.graph.node.Node;
+import io.github.mattidragon.nodeflow.graph.node.NodeType;
+import io.github.mattidragon.nodeflow.misc.EvaluationError;
+import net.minecraft.text.Text;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ValidationCacheTest {
+    private static GraphEnvironment env;
+
+    @BeforeAll
+    static void bootstrap() {
+        env = TestSupport.environment(Configurable.TYPE);
+    }
+
+    @Test
+    void reusesVerdictUntilConfigChanges() {
+        var graph = new Graph(env);
+        var node = TestSupport.add(graph, Configurable.TYPE);
+
+        assertEquals(List.of(), graph.evaluate(Context.empty()));
+        assertEquals(List.of(), graph.evaluate(Context.empty()));
+        assertEquals(1, node.validations);
+
+        node.setValid(false);
+        assertEquals(List.of(EvaluationError.Type.INVALID_CONFIG), types(graph.evaluate(Context.empty())));
+        // Broken graphs keep their verdict as well
+        assertEquals(List.of(EvaluationError.Type.INVALID_CONFIG), types(graph.evaluate(Context.empty())));
+        assertEquals(2, node.validations);
+
+        node.setValid(true);
+        assertEquals(List.of(), graph.evaluate(Context.empty()));
+        assertEquals(3, node.validations);
+    }
+
+    private static List<EvaluationError.Type> types(List<EvaluationError> errors) {
+        return errors.stream().map(EvaluationError::type).toList();
+    }
+
+    /**
+     * Has a setting that decides whether it's valid, and counts how often it's validated.
+     */
+    private static class Configurable extends Node {
+        private static final NodeType<Configurable> TYPE = new NodeType<>(Configurable::new, false, true);
+        private boolean valid = true;
+        private int validations = 0;
+
+        private Configurable(Graph graph) {
+            super(TYPE, List.of(), graph);
+        }
+
+        private void setValid(boolean valid) {
+            this.valid = valid;
+            onConfigChanged();
+        }
+
+        @Override
+        public List<Text> validate() {
+            validations++;
+            return valid ? List.of() : List.of(Text.literal("Invalid"));
+        }
+
+        @Override
+        public Connector<?>[] getOutputs() {
+            return new Connector[0];
+        }
+
+        @Override
+        public Connector<?>[] getInputs() {
+            return new Connector[0];
+        }
+
+        @Override
+        protected Either<DataValue<?>[], Text> process(DataValue<?>[] inputs, ContextProvider context) {
+            return Either.left(new DataValue<?>[0]);
+        }
+    }
+}
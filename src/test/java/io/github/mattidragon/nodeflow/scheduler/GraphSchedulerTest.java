@@ -0,0 +1,155 @@
+package io.github.mattidragon.nodeflow.scheduler;
+
+import io.github.mattidragon.nodeflow.TestSupport;
+import io.github.mattidragon.nodeflow.graph.Graph;
+import io.github.mattidragon.nodeflow.graph.GraphEnvironment;
+import io.github.mattidragon.nodeflow.graph.context.Context;
+import io.github.mattidragon.nodeflow.misc.EvaluationError;
+import io.github.mattidragon.nodeflow.misc.GraphProvider;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the scheduler tick by tick with providers that record when their graph is fetched, which happens once for each run.
+ */
+class GraphSchedulerTest {
+    private static GraphEnvironment env;
+    private final GraphScheduler scheduler = GraphScheduler.getInstance();
+    private final List<String> runs = new ArrayList<>();
+
+    @BeforeAll
+    static void bootstrap() {
+        env = TestSupport.environment();
+    }
+
+    @BeforeEach
+    void reset() {
+        scheduler.clear();
+        // Large enough that slow first runs and logged failures don't carry graphs over, unless a test lowers it
+        scheduler.setBudgetMillis(1000);
+    }
+
+    @AfterEach
+    void clear() {
+        scheduler.clear();
+        scheduler.setBudgetMillis(GraphScheduler.DEFAULT_BUDGET_MILLIS);
+    }
+
+    @Test
+    void staggersPhases() {
+        schedule("a", 3);
+        schedule("b", 3);
+        schedule("c", 3);
+        schedule("d", 3);
+
+        var ticks = new ArrayList<List<String>>();
+        for (int i = 0; i < 6; i++) {
+            ticks.add(tick());
+        }
+        // Each graph takes the least used phase, so the fourth one shares the first phase
+        assertEquals(List.of(List.of("b"), List.of("c"), List.of("a", "d"), List.of("b"), List.of("c"), List.of("a", "d")), ticks);
+    }
+
+    @Test
+    void runsInScheduleOrderWithinBudget() {
+        schedule("a", 1);
+        schedule("b", 2);
+        schedule("c", 1);
+
+        assertEquals(List.of("a", "c"), tick());
+        assertEquals(List.of("a", "b", "c"), tick());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    void carriesOverGraphsThatDontFitIntoBudget() {
+        // A zero budget still runs one graph each tick
+        scheduler.setBudgetMillis(0);
+        var a = schedule("a", 1);
+        var b = schedule("b", 1);
+        var c = schedule("c", 1);
+
+        assertEquals(List.of("a"), tick());
+        assertEquals(2, scheduler.getPendingCount());
+        // Carried over graphs run before the ones that are due again
+        assertEquals(List.of("b"), tick());
+        assertEquals(List.of("c"), tick());
+        assertEquals(List.of("a"), tick());
+
+        assertEquals(List.of(2L, 1L, 2L), List.of(a.getLastDelay(), b.getLastDelay(), c.getLastDelay()));
+        assertEquals(List.of(2L, 2L, 2L), List.of(a.getCarriedOverTicks(), b.getCarriedOverTicks(), c.getCarriedOverTicks()));
+        // Each graph was still waiting when it was due again twice
+        assertEquals(List.of(2L, 2L, 2L), List.of(a.getSkippedRuns(), b.getSkippedRuns(), c.getSkippedRuns()));
+    }
+
+    @Test
+    void isolatesAndBacksOffFailingGraphs() {
+        var failing = scheduler.schedule(new Provider("failing", null), null, BlockPos.ORIGIN, 1, Context::empty);
+        var working = schedule("working", 1);
+
+        var failingRuns = new ArrayList<Integer>();
+        for (int i = 1; i <= 10; i++) {
+            var ran = tick();
+            assertTrue(ran.contains("working"), "graph after the failing one ran in tick " + i);
+            if (ran.contains("failing"))
+                failingRuns.add(i);
+        }
+        // Skips one run after the first failure, two after the second and so on
+        assertEquals(List.of(1, 3, 6, 10), failingRuns);
+        assertEquals(4, failing.getFailures());
+        assertEquals(0, failing.getSkippedRuns());
+        assertEquals(List.of(EvaluationError.Type.EVALUATION_ERROR), failing.getLastErrors().stream().map(EvaluationError::type).toList());
+        assertEquals(0, working.getFailures());
+        assertEquals(List.of(), working.getLastErrors());
+    }
+
+    @Test
+    void cancelledGraphsStopRunning() {
+        var a = schedule("a", 1);
+        schedule("b", 1);
+        assertEquals(List.of("a", "b"), tick());
+        a.cancel();
+        assertTrue(a.isCancelled());
+        assertEquals(List.of("b"), tick());
+    }
+
+    private ScheduledGraph schedule(String name, int interval) {
+        return scheduler.schedule(new Provider(name, new Graph(env)), null, BlockPos.ORIGIN, interval, Context::empty);
+    }
+
+    private List<String> tick() {
+        runs.clear();
+        scheduler.tick();
+        return List.copyOf(runs);
+    }
+
+    private class Provider implements GraphProvider {
+        private final String name;
+        private final Graph graph;
+
+        private Provider(String name, Graph graph) {
+            this.name = name;
+            this.graph = graph;
+        }
+
+        @Override
+        public void setGraph(Graph graph, World world, BlockPos pos) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Graph getGraph(World world, BlockPos pos) {
+            runs.add(name);
+            return graph;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package io.github.mattidragon.nodeflow.graph.evaluation;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Column kernels for the built-in number ops using the vector api. Only loaded by {@link ColumnKernels} if the {@code jdk.incubator.vector} module is available.
+ * Only operations that give exactly the same results as their scalar versions are vectorized, so for example {@code FLOOR} and the trigonometric functions aren't.
+ * <p>
+ * Each operation has its own method on purpose. The vector api is only fast when the operator is a constant, which isn't the case in a shared method once it's used with multiple operators.
+ * Sharing the loops makes every kernel many times slower, see {@code vectorShared} in {@code ColumnKernelBenchmark}.
+ */
+final class VectorKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    private VectorKernels() {
+    }
+
+    static void register() {
+        ColumnKernels.registerKernel(PrimitiveOp.ADD, VectorKernels::add);
+        ColumnKernels.registerKernel(PrimitiveOp.SUBTRACT, VectorKernels::subtract);
+        ColumnKernels.registerKernel(PrimitiveOp.MULTIPLY, VectorKernels::multiply);
+        ColumnKernels.registerKernel(PrimitiveOp.DIVIDE, VectorKernels::divide);
+        ColumnKernels.registerKernel(PrimitiveOp.MIN, VectorKernels::min);
+        ColumnKernels.registerKernel(PrimitiveOp.MAX, VectorKernels::max);
+        ColumnKernels.registerKernel(PrimitiveOp.NEGATE, VectorKernels::negate);
+        ColumnKernels.registerKernel(PrimitiveOp.ABS, VectorKernels::abs);
+        ColumnKernels.registerKernel(PrimitiveOp.SQRT, VectorKernels::sqrt);
+
+        ColumnKernels.registerKernel(PrimitiveOp.NUM_EQL, VectorKernels::equal);
+        ColumnKernels.registerKernel(PrimitiveOp.NUM_NEQL, VectorKernels::notEqual);
+        ColumnKernels.registerKernel(PrimitiveOp.LESS, VectorKernels::less);
+        ColumnKernels.registerKernel(PrimitiveOp.GREATER, VectorKernels::greater);
+    }
+
+    static void add(ColumnFrame frame) {
+        var first = frame.getNumbers(0);
+        var second = frame.getNumbers(1);
+        var result = frame.getNumberOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, first, i).lanewise(VectorOperators.ADD, DoubleVector.fromArray(SPECIES, second, i)).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            DoubleVector.fromArray(SPECIES, first, i, mask).lanewise(VectorOperators.ADD, DoubleVector.fromArray(SPECIES, second, i, mask)).intoArray(result, i, mask);
+        }
+    }
+
+    static void subtract(ColumnFrame frame) {
+        var first = frame.getNumbers(0);
+        var second = frame.getNumbers(1);
+        var result = frame.getNumberOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, first, i).lanewise(VectorOperators.SUB, DoubleVector.fromArray(SPECIES, second, i)).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            DoubleVector.fromArray(SPECIES, first, i, mask).lanewise(VectorOperators.SUB, DoubleVector.fromArray(SPECIES, second, i, mask)).intoArray(result, i, mask);
+        }
+    }
+
+    static void multiply(ColumnFrame frame) {
+        var first = frame.getNumbers(0);
+        var second = frame.getNumbers(1);
+        var result = frame.getNumberOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, first, i).lanewise(VectorOperators.MUL, DoubleVector.fromArray(SPECIES, second, i)).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            DoubleVector.fromArray(SPECIES, first, i, mask).lanewise(VectorOperators.MUL, DoubleVector.fromArray(SPECIES, second, i, mask)).intoArray(result, i, mask);
+        }
+    }
+
+    static void divide(ColumnFrame frame) {
+        var first = frame.getNumbers(0);
+        var second = frame.getNumbers(1);
+        var result = frame.getNumberOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, first, i).lanewise(VectorOperators.DIV, DoubleVector.fromArray(SPECIES, second, i)).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            DoubleVector.fromArray(SPECIES, first, i, mask).lanewise(VectorOperators.DIV, DoubleVector.fromArray(SPECIES, second, i, mask)).intoArray(result, i, mask);
+        }
+    }
+
+    static void min(ColumnFrame frame) {
+        var first = frame.getNumbers(0);
+        var second = frame.getNumbers(1);
+        var result = frame.getNumberOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, first, i).lanewise(VectorOperators.MIN, DoubleVector.fromArray(SPECIES, second, i)).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            DoubleVector.fromArray(SPECIES, first, i, mask).lanewise(VectorOperators.MIN, DoubleVector.fromArray(SPECIES, second, i, mask)).intoArray(result, i, mask);
+        }
+    }
+
+    static void max(ColumnFrame frame) {
+        var first = frame.getNumbers(0);
+        var second = frame.getNumbers(1);
+        var result = frame.getNumberOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, first, i).lanewise(VectorOperators.MAX, DoubleVector.fromArray(SPECIES, second, i)).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            DoubleVector.fromArray(SPECIES, first, i, mask).lanewise(VectorOperators.MAX, DoubleVector.fromArray(SPECIES, second, i, mask)).intoArray(result, i, mask);
+        }
+    }
+
+    static void negate(ColumnFrame frame) {
+        var input = frame.getNumbers(0);
+        var result = frame.getNumberOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, input, i).lanewise(VectorOperators.NEG).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            DoubleVector.fromArray(SPECIES, input, i, mask).lanewise(VectorOperators.NEG).intoArray(result, i, mask);
+        }
+    }
+
+    static void abs(ColumnFrame frame) {
+        var input = frame.getNumbers(0);
+        var result = frame.getNumberOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, input, i).lanewise(VectorOperators.ABS).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            DoubleVector.fromArray(SPECIES, input, i, mask).lanewise(VectorOperators.ABS).intoArray(result, i, mask);
+        }
+    }
+
+    static void sqrt(ColumnFrame frame) {
+        var input = frame.getNumbers(0);
+        var result = frame.getNumberOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, input, i).lanewise(VectorOperators.SQRT).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            DoubleVector.fromArray(SPECIES, input, i, mask).lanewise(VectorOperators.SQRT).intoArray(result, i, mask);
+        }
+    }
+
+    static void equal(ColumnFrame frame) {
+        var first = frame.getNumbers(0);
+        var second = frame.getNumbers(1);
+        var result = frame.getBooleanOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, first, i).compare(VectorOperators.EQ, DoubleVector.fromArray(SPECIES, second, i)).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            writeTail(DoubleVector.fromArray(SPECIES, first, i, mask).compare(VectorOperators.EQ, DoubleVector.fromArray(SPECIES, second, i, mask)), result, i, length);
+        }
+    }
+
+    static void notEqual(ColumnFrame frame) {
+        var first = frame.getNumbers(0);
+        var second = frame.getNumbers(1);
+        var result = frame.getBooleanOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, first, i).compare(VectorOperators.NE, DoubleVector.fromArray(SPECIES, second, i)).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            writeTail(DoubleVector.fromArray(SPECIES, first, i, mask).compare(VectorOperators.NE, DoubleVector.fromArray(SPECIES, second, i, mask)), result, i, length);
+        }
+    }
+
+    static void less(ColumnFrame frame) {
+        var first = frame.getNumbers(0);
+        var second = frame.getNumbers(1);
+        var result = frame.getBooleanOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, first, i).compare(VectorOperators.LT, DoubleVector.fromArray(SPECIES, second, i)).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            writeTail(DoubleVector.fromArray(SPECIES, first, i, mask).compare(VectorOperators.LT, DoubleVector.fromArray(SPECIES, second, i, mask)), result, i, length);
+        }
+    }
+
+    static void greater(ColumnFrame frame) {
+        var first = frame.getNumbers(0);
+        var second = frame.getNumbers(1);
+        var result = frame.getBooleanOutput(0);
+        var length = frame.length();
+        var bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, first, i).compare(VectorOperators.GT, DoubleVector.fromArray(SPECIES, second, i)).intoArray(result, i);
+        }
+        if (i < length) {
+            var mask = SPECIES.indexInRange(i, length);
+            writeTail(DoubleVector.fromArray(SPECIES, first, i, mask).compare(VectorOperators.GT, DoubleVector.fromArray(SPECIES, second, i, mask)), result, i, length);
+        }
+    }
+
+    // Masks can't be stored partially, so the last few results are copied out of the lanes one by one
+    private static void writeTail(VectorMask<Double> mask, boolean[] column, int start, int length) {
+        for (int lane = 0; start + lane < length; lane++) {
+            column[start + lane] = mask.laneIsSet(lane);
+        }
+    }
+}